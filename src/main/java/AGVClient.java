@@ -1,14 +1,10 @@
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 // [추가] 시간 포맷팅을 위한 클래스 임포트
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
 
 public class AGVClient {
     private static final String SERVER_IP = "127.0.0.1";
@@ -19,19 +15,37 @@ public class AGVClient {
 
     private String myId;
 
+    // [추가] 재전송된 COMMAND 중복 실행 방지
+    private final TaskLedger ledger = new TaskLedger();
+
+    // 이동 시간 / 로그 시각 (시뮬레이션에서는 가상 시계)
+    private final FactoryClock clock;
+    private boolean logging = true;
+
     public AGVClient(String id) {
+        this(id, FactoryClock.SYSTEM);
+    }
+
+    public AGVClient(String id, FactoryClock clock) {
         this.myId = id;
+        this.clock = clock;
+    }
+
+    // 대규모 시뮬레이션에서 장비별 로그 끄기
+    public void setLogging(boolean logging) {
+        this.logging = logging;
     }
 
     // [추가] 로그 출력 헬퍼 (일반)
     private void log(String msg) {
-        String time = LocalTime.now().format(TIME_FMT);
+        if (!logging) return;
+        String time = clock.localTime().format(TIME_FMT);
         System.out.println("[" + time + "] " + msg);
     }
 
     // [추가] 로그 출력 헬퍼 (에러)
     private void logError(String msg) {
-        String time = LocalTime.now().format(TIME_FMT);
+        String time = clock.localTime().format(TIME_FMT);
         System.err.println("[" + time + "] " + msg);
     }
 
@@ -46,30 +60,26 @@ public class AGVClient {
     }
 
     public void start() {
-        try {
-            Socket socket = new Socket(SERVER_IP, PORT);
-            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        // 끊기면 재접속 + 세션 재개 (이동 중 보낸 위치/ACK는 재개 때 다시 전송)
+        SessionLink link = new SessionLink(myId, SERVER_IP, PORT, myId, false);
 
-            // System.out -> log() 변경
-            log(">> [" + myId + "] 서버 연결 성공");
+        // 1. 접속 시 STATUS 보고 (Active), 2. 수신 대기 루프
+        link.run(this::onConnected, line -> handleServerMessage(line, link::send));
+    }
 
-            // 1. 접속 시 STATUS 보고 (Active)
-            String loginPacket = JsonPacketBuilder.createStatusPacket(myId, "ACTIVE", false);
-            out.println(loginPacket);
+    // 서버 연결 직후 (TCP / 시뮬레이션 공용)
+    void onConnected(Consumer<String> out) {
+        // System.out -> log() 변경
+        log(">> [" + myId + "] 서버 연결 성공");
 
-            // 2. 수신 대기 루프
-            String line;
-            while ((line = in.readLine()) != null) {
-                handleServerMessage(line, out);
-            }
+        // 새 세션 (세션 재개는 여기로 오지 않음) -> 재시작한 서버가 같은 task_id를 다시 쓸 수 있음
+        ledger.clear();
 
-        } catch (IOException e) {
-            logError(">> Connection Error: " + e.getMessage());
-        }
+        String loginPacket = JsonPacketBuilder.createStatusPacket(myId, "ACTIVE", false);
+        out.accept(loginPacket);
     }
 
-    private void handleServerMessage(String jsonStr, PrintWriter out) {
+    void handleServerMessage(String jsonStr, Consumer<String> out) {
         try {
             JSONObject root = new JSONObject(jsonStr);
             JSONObject header = root.getJSONObject("header");
@@ -86,9 +96,15 @@ public class AGVClient {
                 JSONObject body = root.getJSONObject("body");
                 String command = body.getString("command");
 
+                // 서버 재전송 명령이면 다시 실행하지 않음 (완료된 작업이면 ACK만 재전송)
+                if (!acceptTask(body.optString("task_id"), out)) return;
+
                 if ("MOVE_PATH".equals(command)) {
-                    // 스레드로 분리하여 이동 시뮬레이션
-                    new Thread(() -> simulateMovement(body, out)).start();
+                    // 이동 시뮬레이션 (구간마다 시계에 예약 -> 명령마다 스레드를 만들지 않음)
+                    simulateMovement(body, out);
+                } else {
+                    // 이동 외 명령은 받은 즉시 ACK (서버 재전송 중단)
+                    acknowledge(body.optString("task_id"), command, out);
                 }
             }
 
@@ -97,36 +113,74 @@ public class AGVClient {
         }
     }
 
-    private void simulateMovement(JSONObject body, PrintWriter out) {
-        try {
-            JSONObject payload = body.getJSONObject("payload");
-            String taskId = body.getString("task_id");
-            String dest = payload.getString("final_dest");
-            JSONArray waypoints = payload.getJSONArray("waypoints");
+    private boolean acceptTask(String taskId, Consumer<String> out) {
+        if (taskId.isEmpty()) return true;
 
-            log(">> [" + myId + "] 이동 시작 -> " + dest);
+        String[] completedAck = new String[1];
+        if (ledger.begin(taskId, completedAck)) return true;
 
-            // 받은 경로대로 이동
-            for (int i = 0; i < waypoints.length(); i++) {
-                String qr = waypoints.getString(i);
-                Thread.sleep(2000); // 2초 이동
+        if (completedAck[0] != null) {
+            out.accept(completedAck[0]);
+            log(">> [" + myId + "] 재전송 명령 수신 -> 완료 ACK 재전송 (" + taskId + ")");
+        } else {
+            log(">> [" + myId + "] 진행 중인 명령 재수신 -> 무시 (" + taskId + ")");
+        }
+        return false;
+    }
 
-                // 위치 보고 패킷 전송
-                String packet = JsonPacketBuilder.createLocationPacket(myId, qr, dest, i + 1);
-                out.println(packet);
+    private void acknowledge(String taskId, String command, Consumer<String> out) {
+        if (taskId.isEmpty()) return;
+        String ackPacket = JsonPacketBuilder.createAckPacket(myId, taskId, command + " 수신");
+        ledger.complete(taskId, ackPacket);
+        out.accept(ackPacket);
+        log(">> [" + myId + "] 명령 수신 ACK 전송 (" + command + ")");
+    }
 
-                log(">> [" + myId + "] QR 통과: " + qr);
-            }
+    private void simulateMovement(JSONObject body, Consumer<String> out) {
+        JSONObject payload = body.getJSONObject("payload");
+        String taskId = body.getString("task_id");
+        String dest = payload.getString("final_dest");
+        JSONArray waypoints = payload.getJSONArray("waypoints");
 
-            Thread.sleep(1000);
-            // 도착 ACK 전송
-            String ackPacket = JsonPacketBuilder.createAckPacket(myId, taskId, dest + " 도착 완료");
-            out.println(ackPacket);
+        log(">> [" + myId + "] 이동 시작 -> " + dest);
 
-            log(">> [" + myId + "] 도착 완료 ACK 전송");
+        // 받은 경로대로 이동
+        moveStep(taskId, dest, waypoints, 0, out);
+    }
 
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    // 구간 1개 이동: 2초 뒤 QR 통과 보고 -> 다음 구간 예약 (마지막 구간 뒤에는 1초 뒤 도착 ACK)
+    private void moveStep(String taskId, String dest, JSONArray waypoints, int i, Consumer<String> out) {
+        if (i == waypoints.length()) {
+            long due = clock.now() + 1000;
+            clock.schedule(1000, () -> arrive(taskId, dest, out, due));
+            return;
         }
+        long due = clock.now() + 2000;
+        clock.schedule(2000, () -> { // 2초 이동
+            FactoryEvents.MovementStep event = new FactoryEvents.MovementStep();
+            event.begin();
+            String qr = waypoints.getString(i);
+
+            // 위치 보고 패킷 전송
+            String packet = JsonPacketBuilder.createLocationPacket(myId, qr, dest, i + 1);
+            out.accept(packet);
+            event.end(myId, taskId, "MOVE", i + 1, qr, packet, clock.now() - due);
+
+            log(">> [" + myId + "] QR 통과: " + qr);
+            moveStep(taskId, dest, waypoints, i + 1, out);
+        });
+    }
+
+    private void arrive(String taskId, String dest, Consumer<String> out, long due) {
+        FactoryEvents.MovementStep event = new FactoryEvents.MovementStep();
+        event.begin();
+
+        // 도착 ACK 전송
+        String ackPacket = JsonPacketBuilder.createArrivalAckPacket(myId, "AGV", taskId, dest + " 도착 완료");
+        ledger.complete(taskId, ackPacket);
+        out.accept(ackPacket);
+        event.end(myId, taskId, "ARRIVE", -1, dest, ackPacket, clock.now() - due);
+
+        log(">> [" + myId + "] 도착 완료 ACK 전송");
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,9 @@
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 // [추가] 시간 포맷팅을 위한 클래스 임포트
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
 
 public class AMRClient {
     private static final String SERVER_IP = "127.0.0.1";
@@ -17,23 +13,39 @@ public class AMRClient {
     private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
 
     private String myId;
-    private Socket socket;
-    private PrintWriter out;
-    private boolean isRunning = true;
+
+    // [추가] 재전송된 COMMAND 중복 실행 방지
+    private final TaskLedger ledger = new TaskLedger();
+    private Consumer<String> out;
+
+    // 이동 시간 / 로그 시각 (시뮬레이션에서는 가상 시계)
+    private final FactoryClock clock;
+    private boolean logging = true;
 
     public AMRClient(String id) {
+        this(id, FactoryClock.SYSTEM);
+    }
+
+    public AMRClient(String id, FactoryClock clock) {
         this.myId = id;
+        this.clock = clock;
+    }
+
+    // 대규모 시뮬레이션에서 장비별 로그 끄기
+    public void setLogging(boolean logging) {
+        this.logging = logging;
     }
 
     // [추가] 로그 출력 헬퍼 (일반)
     private void log(String msg) {
-        String time = LocalTime.now().format(TIME_FMT);
+        if (!logging) return;
+        String time = clock.localTime().format(TIME_FMT);
         System.out.println("[" + time + "] " + msg);
     }
 
     // [추가] 로그 출력 헬퍼 (에러)
     private void logError(String msg) {
-        String time = LocalTime.now().format(TIME_FMT);
+        String time = clock.localTime().format(TIME_FMT);
         System.err.println("[" + time + "] " + msg);
     }
 
@@ -48,34 +60,25 @@ public class AMRClient {
     }
 
     public void start() {
-        try {
-            socket = new Socket(SERVER_IP, PORT);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        // 끊기면 재접속 + 세션 재개 (접속 시 STATUS 보고는 새 세션일 때만)
+        new SessionLink(myId, SERVER_IP, PORT, myId, false).run(this::onConnected, this::handleServerMessage);
+    }
 
-            // System.out -> log() 로 변경
-            log(">> [AMR] 서버 연결 성공 (" + myId + ")");
+    // 서버 연결 직후 (TCP / 시뮬레이션 공용)
+    void onConnected(Consumer<String> out) {
+        this.out = out;
 
-            // 접속 시 STATUS 보고 (Active)
-            String loginPacket = JsonPacketBuilder.createStatusPacket(myId, "AMR", "ACTIVE", false);
-            out.println(loginPacket);
+        // System.out -> log() 로 변경
+        log(">> [AMR] 서버 연결 성공 (" + myId + ")");
 
-            String line;
-            while (isRunning && (line = in.readLine()) != null) {
-                handleServerMessage(line);
-            }
+        // 새 세션 (세션 재개는 여기로 오지 않음) -> 재시작한 서버가 같은 task_id를 다시 쓸 수 있음
+        ledger.clear();
 
-        } catch (IOException e) {
-            // System.err -> logError() 로 변경
-            logError(">> [" + myId + " ERROR] 연결 실패: " + e.getMessage());
-        } finally {
-            try {
-                if (socket != null && !socket.isClosed()) socket.close();
-            } catch (IOException e) { /* ignore */ }
-        }
+        String loginPacket = JsonPacketBuilder.createStatusPacket(myId, "AMR", "ACTIVE", false);
+        out.accept(loginPacket);
     }
 
-    private void handleServerMessage(String jsonStr) {
+    void handleServerMessage(String jsonStr) {
         try {
             JSONObject root = new JSONObject(jsonStr);
             JSONObject header = root.getJSONObject("header");
@@ -91,8 +94,14 @@ public class AMRClient {
                 JSONObject body = root.getJSONObject("body");
                 String command = body.getString("command");
 
+                // 서버 재전송 명령이면 다시 실행하지 않음 (완료된 작업이면 ACK만 재전송)
+                if (!acceptTask(body.optString("task_id"))) return;
+
                 if ("DELIVER_PART".equals(command) || "MOVE_PATH".equals(command) || "MOVE_CMD".equals(command)) {
-                    new Thread(() -> simulateMovement(body)).start();
+                    simulateMovement(body);
+                } else {
+                    // 이동 외 명령은 받은 즉시 ACK (서버 재전송 중단)
+                    acknowledge(body.optString("task_id"), command);
                 }
             }
 
@@ -101,37 +110,63 @@ public class AMRClient {
         }
     }
 
+    private boolean acceptTask(String taskId) {
+        if (taskId.isEmpty()) return true;
+
+        String[] completedAck = new String[1];
+        if (ledger.begin(taskId, completedAck)) return true;
+
+        if (completedAck[0] != null) {
+            out.accept(completedAck[0]);
+            log(">> [" + myId + "] 재전송 명령 수신 -> 완료 ACK 재전송 (" + taskId + ")");
+        } else {
+            log(">> [" + myId + "] 진행 중인 명령 재수신 -> 무시 (" + taskId + ")");
+        }
+        return false;
+    }
+
+    private void acknowledge(String taskId, String command) {
+        if (taskId.isEmpty()) return;
+        String ackPacket = JsonPacketBuilder.createAckPacket(myId, "AMR", taskId, command);
+        ledger.complete(taskId, ackPacket);
+        out.accept(ackPacket);
+        log(">> [전송] 명령 수신 ACK: " + command);
+    }
+
     private void simulateMovement(JSONObject body) {
-        try {
-            JSONObject payload = body.getJSONObject("payload");
-            String taskId = body.getString("task_id");
-
-            // 목적지 키값 처리 (AGV/AMR 시나리오 호환성)
-            String dest;
-            if (payload.has("final_dest")) {
-                dest = payload.getString("final_dest");
-            } else {
-                dest = payload.optString("target_cell", "BASE_STATION");
-            }
+        JSONObject payload = body.getJSONObject("payload");
+        String taskId = body.getString("task_id");
+
+        // 목적지 키값 처리 (AGV/AMR 시나리오 호환성)
+        String dest;
+        if (payload.has("final_dest")) {
+            dest = payload.getString("final_dest");
+        } else {
+            dest = payload.optString("target_cell", "BASE_STATION");
+        }
 
-            log(">> [동작] " + myId + " 이동 시작 -> " + dest);
+        log(">> [동작] " + myId + " 이동 시작 -> " + dest);
 
-            // 이동 시뮬레이션 (5초)
-            Thread.sleep(5000);
+        // 이동 시뮬레이션 (5초 뒤 도착, 시계에 예약 -> 명령마다 스레드를 만들지 않음)
+        long due = clock.now() + 5000;
+        clock.schedule(5000, () -> arrive(taskId, dest, due));
+    }
 
-            // ACK 전송
-            String ackCommand = "ARRIVED_AT_" + dest.toUpperCase();
-            String ackPacket = JsonPacketBuilder.createAckPacket(myId, "AMR", taskId, ackCommand);
-            out.println(ackPacket);
+    private void arrive(String taskId, String dest, long due) {
+        FactoryEvents.MovementStep event = new FactoryEvents.MovementStep();
+        event.begin();
 
-            log(">> [전송] 작업 완료 ACK: " + ackCommand);
+        // ACK 전송
+        String ackCommand = "ARRIVED_AT_" + dest.toUpperCase();
+        String ackPacket = JsonPacketBuilder.createArrivalAckPacket(myId, "AMR", taskId, ackCommand);
+        ledger.complete(taskId, ackPacket);
+        out.accept(ackPacket);
+        event.end(myId, taskId, "ARRIVE", -1, dest, ackPacket, clock.now() - due);
 
-            // 상태 보고 (INACTIVE)
-            out.println(JsonPacketBuilder.createStatusPacket(myId, "AMR", "INACTIVE", false));
-            log(">> [전송] 상태 보고: INACTIVE");
+        log(">> [전송] 작업 완료 ACK: " + ackCommand);
 
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        // 상태 보고 (INACTIVE)
+        out.accept(JsonPacketBuilder.createStatusPacket(myId, "AMR", "INACTIVE", false));
+        log(">> [전송] 상태 보고: INACTIVE");
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,8 @@
 import java.io.*;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 // WebSocket 관련 임포트
@@ -19,48 +12,225 @@ import org.java_websocket.handshake.ClientHandshake;
 
 public class AMRServer {
 
-    private static final int TCP_PORT = 8888; // AMR 통신용 포트 (기존 유지)
-    private static final int WS_PORT = 8889;  // 웹 모니터링용 포트 (기존 유지)
+    // 서버별 키 (ServerLauncher는 AGV/AMR 서버를 한 JVM에서 띄우므로 공용 키를 쓰면 같은 포트에 묶임)
+    private static final int TCP_PORT = Integer.getInteger("amr.tcp.port", 8888); // AMR 통신용 포트 (기존 유지)
+    private static final int WS_PORT = Integer.getInteger("amr.ws.port", 8889);  // 웹 모니터링용 포트 (기존 유지)
     private static final String SERVER_ID = "AMR_SERVER"; // JSON 시나리오와 일치시킴
+
+    // 이 시간 동안 아무 패킷(하트비트 PING 포함)도 없는 장비 연결은 닫음 (기본 0 = 사용 안 함)
+    // 하트비트를 보내지 않는 접속(ReplayBench 등)도 끊기므로 모든 장비가 SessionLink를 쓸 때만 켤 것 (예: 15000)
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("session.idleTimeoutMs", 0L);
+
     private static final String SCENARIO_FILE = "amr_scenario.json";
 
     // 시간 포맷터
     private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
 
-    // 클라이언트 소켓 저장소
-    private static Map<String, PrintWriter> clients = new ConcurrentHashMap<>();
+    // 장비 사전 (ID -> 슬롯, 슬롯별 연결/상태)
+    private static final DeviceRegistry registry = DeviceRegistry.fromSystemProperties();
+
+    // 위치 이력 (LOCATION -> 장비별 압축 시계열, 웹소켓 {"op":"trail"} 요청으로 조회)
+    private static final PositionStore positions = PositionStore.fromSystemProperties(registry);
+
+    // KPI 집계 (셀 가동률 / 로봇 유휴율 / 경로별 이동 시간 / 시간당 작업 수 -> 대시보드로 주기 전송)
+    private static final KpiEngine kpi = KpiEngine.fromSystemProperties(registry);
+
+    // 수신 패킷 기록 (-Djournal.file 지정 시, ReplayBench 재생용)
+    private static final PacketJournal journal = PacketJournal.fromSystemProperties();
+
+    // 수신 제어 (연결별/타입별/전체 토큰 버킷, JSON 파싱 전에 적용)
+    private static final AdmissionControl admission = AdmissionControl.fromSystemProperties();
+
+    // 로그 + 대시보드 중계 우선순위 레인 (COMMAND/ACK > STATUS > LOCATION)
+    private static final PriorityLanes lanes = PriorityLanes.fromSystemProperties("amr");
+
+    // 패킷 / 시나리오 단계 처리 (상태 갱신, 명령 재전송, 중계 -> FactorySimulation도 같은 코드로 실행)
+    private static final ServerCore core = new ServerCore(SERVER_ID, "TASK_AMR_%02d", FactoryClock.SYSTEM,
+            registry, positions, kpi, lanes, new ServerCore.Network() {
+                @Override
+                public boolean sendToDevice(String deviceId, String jsonStr) {
+                    return AMRServer.sendToDevice(deviceId, jsonStr);
+                }
+
+                @Override
+                public void relay(String jsonStr, JSONObject root) {
+                    relayToDashboard(jsonStr, root);
+                }
+
+                @Override
+                public void publishLocal(String jsonStr, JSONObject root) {
+                    AMRServer.publishLocal(jsonStr, root);
+                }
+
+                @Override
+                public void shareCellPacket(String jsonStr) {
+                    bus.publish(SERVER_ID, ServerBus.TOPIC_CELL_PACKET, jsonStr);
+                }
+            });
 
     // 웹소켓 서버 인스턴스
     private static SimpleWebSocketServer wsServer;
 
+    // 대시보드 방송 (원문 / 델타 구독자 구분)
+    private static DashboardStream dashboard;
+
+    // 공용 대시보드 게이트웨이 (gateway.enabled=false면 null -> 위 단순 웹소켓 사용)
+    private static FactoryWebSocketServer gateway;
+
+    // 클러스터 노드 (cluster.node 미설정 시 null -> 단일 서버)
+    private static ClusterNode cluster;
+
+    // 서버 간 이벤트 버스 (AGV <-> AMR 서버가 셀 상태를 공유)
+    private static final ServerBus bus = ServerBus.get();
+
     public static void main(String[] args) {
         printLog("SYSTEM", "AMR 관제 시스템 부팅 중...");
 
-        // 1. 웹소켓 서버 시작
-        wsServer = new SimpleWebSocketServer(WS_PORT);
-        wsServer.start();
-        printLog("SYSTEM", "웹소켓 방송 서버 시작 (Port: " + WS_PORT + ")");
+        // 1. 대시보드 게이트웨이 시작 (gateway.enabled=false면 이 서버 전용 단순 웹소켓)
+        startGateway();
 
-        // 2. 시나리오 실행 스레드 시작
-        new Thread(new ScenarioRunner(SCENARIO_FILE)).start();
+        // 2. 클러스터 합류 (설정된 경우) + 서버 간 이벤트 버스 연결
+        startCluster();
+        startBus();
+        if (kpi != null) kpi.start(SERVER_ID, json -> publishLocal(json, null));
+        startIdleWatch();
 
-        // 3. TCP 소켓 서버 시작
-        try (ServerSocket serverSocket = new ServerSocket(TCP_PORT)) {
-            printLog("SYSTEM", "TCP 연결 대기 중 (Port: " + TCP_PORT + ")");
+        // 3. 시나리오 실행 스레드 시작
+        // 클러스터에서는 시나리오 담당 노드 하나만 실행 (-Dscenario.enabled=false)
+        if (Boolean.parseBoolean(System.getProperty("scenario.enabled", "true"))) {
+            // -Dscenario.amr.dir 지정 시 폴더 안 시나리오 여러 개 동시 실행 + 변경 시 자동 교체
+            new ScenarioManager("amr", scenarioSteps, 5000).startFromSystemProperties(SCENARIO_FILE);
+        }
+
+        // 4. 장비 접속 대기 (-Dtransport=tcp | memory)
+        Transport transport = Transport.get();
+        try (Transport.Listener listener = transport.listen(TCP_PORT)) {
+            printLog("SYSTEM", "장비 연결 대기 중 (" + transport.name() + ", Port: " + TCP_PORT + ")");
             while (true) {
-                new ClientHandler(serverSocket.accept()).start();
+                new ClientHandler(listener.accept()).start();
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    // [예쁜 로그 출력 헬퍼]
-    private static void printPrettyLog(String type, String sender, String receiver, String text) {
-        String time = LocalTime.now().format(TIME_FMT);
-        String flow = String.format("%s -> %s", sender, receiver);
-        // 콘솔 출력 포맷 정렬
-        System.out.printf("[%s] [%-8s] %-25s : %s%n", time, type, flow, text);
+    private static void startCluster() {
+        cluster = ClusterNode.fromSystemProperties(new ClusterNode.Handler() {
+            @Override
+            public boolean deliverLocal(String deviceId, String jsonStr) {
+                Transport.Connection conn = registry.connection(registry.slotOf(deviceId));
+                if (conn == null) return false;
+                sendLocal(conn, deviceId, jsonStr);
+                return true;
+            }
+
+            @Override
+            public void broadcastFleet(String jsonStr) {
+                publishLocal(jsonStr, null);
+
+                // 다른 노드에 붙은 로봇의 ACK -> 이 노드가 보낸 COMMAND 완료 처리
+                if (jsonStr.contains("\"ACK\"")) {
+                    JSONObject root = new JSONObject(jsonStr);
+                    JSONObject body = root.optJSONObject("body");
+                    if ("ACK".equals(root.getJSONObject("header").optString("type")) && body != null && body.has("task_id")) {
+                        core.commands().complete(body.getString("task_id"));
+                    }
+                }
+            }
+        });
+        if (cluster != null) cluster.start();
+    }
+
+    private static void startBus() {
+        bus.configureFromSystemProperties();
+
+        // 상대 서버에 접속한 셀의 패킷 -> 이 서버에도 반영 (셀은 한 서버에만 접속)
+        bus.subscribe(SERVER_ID, ServerBus.TOPIC_CELL_PACKET, (topic, jsonStr) -> core.onSharedCellPacket(jsonStr));
+
+        // 상대 서버가 이 서버에 접속한 장비로 보내달라고 요청
+        bus.subscribe(SERVER_ID, ServerBus.TOPIC_DEVICE_SEND, (topic, payload) -> {
+            int sp = payload.indexOf(' ');
+            String deviceId = payload.substring(0, sp);
+            Transport.Connection conn = registry.connection(registry.slotOf(deviceId));
+            if (conn != null) sendLocal(conn, deviceId, payload.substring(sp + 1));
+        });
+    }
+
+    // 응답 없는 장비 연결 정리 (반쯤 열린 연결 -> 장비는 하트비트 실패로 재접속 후 세션 재개)
+    private static void startIdleWatch() {
+        if (IDLE_TIMEOUT_MS <= 0) return;
+        Thread t = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(Math.max(100, IDLE_TIMEOUT_MS / 4));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                registry.closeIdle(System.currentTimeMillis(), IDLE_TIMEOUT_MS,
+                        id -> printLog("TCP", id + " 응답 없음 (" + IDLE_TIMEOUT_MS + "ms) -> 연결 종료"));
+            }
+        }, "idle-watch-" + SERVER_ID);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // 장비에게 패킷 전송 (로컬 접속 -> 직접, 다른 노드 접속 -> 클러스터 링크로 전달)
+    private static boolean sendToDevice(String deviceId, String jsonStr) {
+        Transport.Connection conn = registry.connection(registry.slotOf(deviceId));
+        if (conn != null) {
+            sendLocal(conn, deviceId, jsonStr);
+            return true;
+        }
+        if (cluster != null && cluster.forward(deviceId, jsonStr)) {
+            return true;
+        }
+        // 셀은 한쪽 서버에만 접속하므로 버스로 상대 서버에 전송 요청 (받을 서버가 없으면 실패)
+        if (deviceId.startsWith("CELL")) {
+            return bus.publish(SERVER_ID, ServerBus.TOPIC_DEVICE_SEND, deviceId + " " + jsonStr);
+        }
+        return false;
+    }
+
+    // 이 서버에 접속한 장비로 직접 전송 (JFR DeviceSend 이벤트)
+    private static void sendLocal(Transport.Connection conn, String deviceId, String jsonStr) {
+        FactoryEvents.DeviceSend event = new FactoryEvents.DeviceSend();
+        event.begin();
+        conn.send(jsonStr);
+        event.end(SERVER_ID, deviceId, jsonStr, conn);
+    }
+
+    // 공용 게이트웨이 합류 (같은 JVM의 AGV/AMR 서버가 게이트웨이 1개를 공유, 단독 실행이면 이 서버 웹소켓 포트)
+    private static void startGateway() {
+        gateway = FactoryWebSocketServer.startShared(WS_PORT);
+        if (gateway == null) {
+            // 게이트웨이를 끈 경우만 단순 웹소켓 (출처 검사 없음, 디코더 1개)
+            wsServer = new SimpleWebSocketServer(WS_PORT);
+            dashboard = new DashboardStream(wsServer);
+            wsServer.start();
+            printLog("SYSTEM", "웹소켓 방송 서버 시작 (Port: " + WS_PORT + ")");
+            return;
+        }
+        // 위치 이력 조회: 이 서버가 가진 장비만 응답 (나머지는 다른 서버 처리기가 응답)
+        if (positions != null) gateway.addRequestHandler(msg -> positions.handleRequest(msg, true));
+        printLog("SYSTEM", "대시보드 게이트웨이 연결 (Port: " + gateway.getPort() + ")");
+    }
+
+    // 이 노드의 대시보드로만 방송 (서버 웹소켓 + 게이트웨이 큐)
+    private static void publishLocal(String jsonStr, JSONObject root) {
+        if (dashboard != null) {
+            dashboard.publish(jsonStr, root);
+        }
+        if (gateway != null) {
+            gateway.publish(jsonStr, root);
+        }
+    }
+
+    // 웹소켓 방송 (클러스터의 다른 노드 대시보드에도 공유, root는 이미 파싱한 패킷)
+    private static void relayToDashboard(String jsonStr, JSONObject root) {
+        publishLocal(jsonStr, root);
+        if (cluster != null) {
+            cluster.publishFleet(jsonStr);
+        }
     }
 
     // 시스템 로그용
@@ -71,171 +241,158 @@ public class AMRServer {
     // --- 웹소켓 서버 클래스 ---
     static class SimpleWebSocketServer extends WebSocketServer {
         public SimpleWebSocketServer(int port) {
-            super(new InetSocketAddress(port));
+            // permessage-deflate 설정은 -Dws.amr.deflate.* (WsCompression 참고)
+            super(new InetSocketAddress(port), WsCompression.drafts("amr"));
         }
         @Override
         public void onOpen(WebSocket conn, ClientHandshake handshake) {
-            // 조용히 접속 처리
+            // ?stream=delta 로 접속하면 델타 구독자 (DashboardStream 참고)
+            dashboard.onOpen(conn, handshake);
         }
         @Override
-        public void onClose(WebSocket conn, int code, String reason, boolean remote) {}
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            dashboard.onClose(conn);
+        }
         @Override
-        public void onMessage(WebSocket conn, String message) {}
+        public void onMessage(WebSocket conn, String message) {
+            // 대시보드 조회 요청 (위치 이력: {"op":"trail","id":"AGV_02","from":"10:05","to":"10:07"})
+            String reply = (positions != null) ? positions.handleRequest(message) : null;
+            if (reply != null) conn.send(reply);
+        }
         @Override
         public void onError(WebSocket conn, Exception ex) { ex.printStackTrace(); }
         @Override
         public void onStart() {}
     }
 
-    // --- 시나리오 실행기 ---
-    static class ScenarioRunner implements Runnable {
-        private String filePath;
-
-        public ScenarioRunner(String filePath) {
-            this.filePath = filePath;
-        }
-
+    // --- 시나리오 단계 처리 (ScenarioManager가 시나리오별 스레드에서 호출) ---
+    private static final ScenarioManager.StepHandler scenarioSteps = new ScenarioManager.StepHandler() {
         @Override
-        public void run() {
-            try {
-                printLog("SCENARIO", "5초 후 시나리오를 시작합니다.");
-                Thread.sleep(5000);
-
-                File file = new File(filePath);
-                if (!file.exists()) {
-                    printLog("ERROR", "파일 없음: " + filePath);
-                    return;
-                }
-
-                String content = new String(Files.readAllBytes(Paths.get(filePath)));
-                JSONArray scenarios = new JSONArray(content);
-                printLog("SCENARIO", "로드 완료 (" + scenarios.length() + " steps)");
-
-                long startTime = System.currentTimeMillis();
-
-                for (int i = 0; i < scenarios.length(); i++) {
-                    JSONObject step = scenarios.getJSONObject(i);
-                    long offset = step.getLong("time_offset_ms");
-
-                    // 타이밍 맞추기
-                    long currentTime = System.currentTimeMillis() - startTime;
-                    long waitTime = offset - currentTime;
-                    if (waitTime > 0) Thread.sleep(waitTime);
-
-                    processScenarioStep(step);
-                }
-                printLog("SCENARIO", "모든 시나리오 종료.");
-
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        public void onStep(String scenarioId, JSONObject step) {
+            core.onScenarioStep(step);
         }
 
-        private void processScenarioStep(JSONObject step) {
-            // 1. JSON 정보 추출
-            String sender = step.getString("sender_id");
-            String receiver = step.getString("receiver_id");
-            String type = step.getString("message_type");
-            String command = step.getString("command");
-            String desc = step.getString("description");
-            String taskId = step.optString("task_id", "TASK_AMR_00");
-
-            // 2. 전송할 패킷 생성
-            JSONObject packet = new JSONObject();
-            JSONObject header = new JSONObject();
-            header.put("type", type);
-            header.put("sender_id", sender);
-            header.put("receiver_id", receiver);
-            header.put("timestamp", LocalTime.now().format(TIME_FMT));
-            header.put("log_text", desc);
-            packet.put("header", header);
-
-            JSONObject body = new JSONObject();
-            body.put("task_id", taskId);
-            body.put("command", command);
-            if (step.has("payload")) {
-                body.put("payload", step.getJSONObject("payload"));
-            }
-            packet.put("body", body);
-
-            String jsonStr = packet.toString();
-
-            // 3. 로그 출력
-            printPrettyLog(type, sender, receiver, desc);
-
-            // 4. 웹소켓 브로드캐스트 (웹 UI 시뮬레이션용)
-            if (wsServer != null) {
-                wsServer.broadcast(jsonStr);
-            }
-
-            // 5. TCP 전송 (서버가 보내는 명령일 경우에만)
-            if (sender.contains("SERVER")) {
-                PrintWriter writer = clients.get(receiver);
-                if (writer != null) {
-                    writer.println(jsonStr);
-                }
-            }
+        @Override
+        public void onFinished(String scenarioId) {
+            printLog("CMD", core.commands().summary());
+            if (lanes != null) printLog("LANES", lanes.summary());
         }
-    }
+    };
 
     // --- 클라이언트 핸들러 (AMR/CELL 공용) ---
     private static class ClientHandler extends Thread {
-        private Socket socket;
-        private PrintWriter out;
-        private BufferedReader in;
+        private final Transport.Connection conn;
         private String clientID = null;
+        private int slot = DeviceRegistry.NO_SLOT;
+        private final AdmissionControl.Gate gate = (admission != null) ? admission.newGate() : null;
 
-        public ClientHandler(Socket socket) {
-            this.socket = socket;
+        public ClientHandler(Transport.Connection conn) {
+            this.conn = conn;
         }
 
         public void run() {
             try {
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                out = new PrintWriter(socket.getOutputStream(), true);
-
                 String line;
-                while ((line = in.readLine()) != null) {
-                    handleIncomingPacket(line);
+                while ((line = conn.readLine()) != null) {
+                    FactoryEvents.PacketIngress ingress = new FactoryEvents.PacketIngress();
+                    ingress.begin();
+                    if (journal != null) journal.record(line);
+
+                    // 한도 초과 패킷은 파싱 전에 폐기 (설정에 따라 지연/연결 종료)
+                    int verdict = (gate != null) ? gate.admit(line) : AdmissionControl.ADMIT;
+                    if (verdict == AdmissionControl.ADMIT) handleIncomingPacket(line);
+
+                    ingress.end(SERVER_ID, clientID, line, conn, verdict);
+                    if (verdict == AdmissionControl.DISCONNECT) break;
                 }
             } catch (IOException e) {
                 // 접속 끊김
             } finally {
                 if (clientID != null) {
-                    clients.remove(clientID);
+                    registry.detach(slot, conn);
+                    // 이미 세션을 재개한 새 연결이 있으면 소유권 유지
+                    if (cluster != null && !registry.isConnected(slot)) cluster.release(clientID);
                     printLog("TCP", clientID + " 접속 해제");
                 }
+                // 수신 제어로 연결을 끊는 경우에도 연결 정리
+                conn.close();
             }
         }
 
         private void handleIncomingPacket(String jsonStr) {
             try {
+                FactoryEvents.PacketParse parse = new FactoryEvents.PacketParse();
+                parse.begin();
                 JSONObject root = new JSONObject(jsonStr);
                 JSONObject header = root.getJSONObject("header");
 
                 String sender = header.getString("sender_id");
-                String receiver = header.getString("receiver_id");
                 String type = header.getString("type");
-                String desc = header.optString("log_text", "");
+                parse.end(SERVER_ID, sender, type, jsonStr);
+
+                // 하트비트 (로그/중계 안 함, 수신 시각만 갱신)
+                if (type.equals("PING")) {
+                    if (clientID != null) registry.touch(slot, System.currentTimeMillis());
+                    sendLocal(conn, sender, JsonPacketBuilder.createPongPacket(SERVER_ID, sender));
+                    return;
+                }
+
+                // 재접속 세션 재개 (다시 로그인하지 않고 이전 슬롯 복원, 중계 안 함)
+                if (type.equals("RESUME")) {
+                    resume(sender, root.optJSONObject("body"));
+                    return;
+                }
+
+                // 재전송/중복 패킷은 로그/중계하지 않음
+                if (core.isDuplicate(header)) return;
 
                 // ID 등록 (최초 1회)
                 if (clientID == null) {
                     clientID = sender;
-                    clients.put(clientID, out);
-                    printLog("TCP", clientID + " 연결됨 (" + socket.getInetAddress() + ")");
+                    slot = registry.register(clientID);
+                    registry.attach(slot, conn, System.currentTimeMillis());
+                    if (gate != null) gate.setLabel(clientID);
+                    if (cluster != null) cluster.claim(clientID);
+                    printLog("TCP", clientID + " 연결됨 (" + conn.remote() + ")");
+
+                    // 새 세션 발급 (끊겼다 다시 붙을 때 RESUME에 사용)
+                    String token = registry.openSession(slot);
+                    sendLocal(conn, clientID, JsonPacketBuilder.createSessionPacket(SERVER_ID, clientID, token, false, 0));
                 }
 
-                // 1. 로그 출력
-                printPrettyLog(type, sender, receiver, desc);
-
-                // 2. 웹소켓 중계
-                if (wsServer != null) {
-                    wsServer.broadcast(jsonStr);
-                }
+                // 순번 검사 + 상태 갱신 + ACK 처리 + 셀 공유 + 로그/중계 (ServerCore)
+                core.onDevicePacket(slot, jsonStr, root);
 
             } catch (Exception e) {
                 System.out.println("Invalid Packet: " + e.getMessage());
             }
         }
+
+        // [세션 재개] 토큰이 맞으면 같은 슬롯에 새 연결을 붙이고 미완료 명령을 바로 재전송
+        private void resume(String sender, JSONObject body) {
+            int known = registry.slotOf(sender);
+            String token = (body != null) ? body.optString("session_token", null) : null;
+
+            // 서버 재시작 / 그 사이 새 로그인으로 세션이 바뀜 -> 거절 (장비는 처음부터 로그인)
+            if (clientID != null || known == DeviceRegistry.NO_SLOT || !registry.isSession(known, token)) {
+                sendLocal(conn, sender, JsonPacketBuilder.createSessionPacket(SERVER_ID, sender, "", false, 0));
+                printLog("TCP", sender + " 세션 재개 거절 (" + conn.remote() + ")");
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            long gapMs = now - registry.lastSeen(known);
+            clientID = sender;
+            slot = known;
+            registry.attach(slot, conn, now);
+            if (gate != null) gate.setLabel(clientID);
+            if (cluster != null) cluster.claim(clientID);
+
+            // 서버가 받은 마지막 순번을 알려주면 장비는 그 뒤 패킷만 다시 보냄
+            sendLocal(conn, clientID, JsonPacketBuilder.createSessionPacket(
+                    SERVER_ID, clientID, token, true, registry.lastSeq(slot)));
+            int resent = core.commands().resendTo(clientID);
+            printLog("TCP", clientID + " 세션 재개 (" + conn.remote() + ", 마지막 수신 후 " + gapMs + "ms, 명령 재전송 " + resent + "건)");
+        }
     }
 }
\ No newline at end of file
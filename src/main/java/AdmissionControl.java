@@ -0,0 +1,237 @@
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * [수신 제어] 장비 하나가 패킷을 폭주시켜도 나머지 장비 처리가 밀리지 않도록
+ * JSON 파싱 전에 토큰 버킷으로 걸러냅니다.
+ *
+ * 버킷 3단계:
+ *   1. 연결별 버킷      : 연결 하나가 초당 보낼 수 있는 패킷 수 (COMMAND/ACK는 별도의 작은 우선 버킷)
+ *   2. 연결별 타입 버킷 : 특정 타입만 따로 제한 (예: LOCATION 초당 50개)
+ *   3. 전체 버킷        : 서버 전체 수신량. 남은 토큰이 예약분 이하로 떨어지면 COMMAND/ACK만 받음
+ * COMMAND/ACK는 일반 연결별 버킷이 바닥나도 받지만, type은 장비가 정하는 값이므로
+ * "ACK"로 위장한 폭주가 예약분을 다 쓰지 못하도록 연결별 우선 버킷으로 따로 제한합니다.
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dadmission.enabled=true           : false면 사용 안 함
+ *   -Dadmission.rate=2000              : 연결별 초당 패킷 수 (버스트는 2배)
+ *   -Dadmission.priorityRate=200       : 연결별 초당 COMMAND/ACK 수 (버스트는 2배)
+ *   -Dadmission.type.LOCATION=50       : 연결별 타입 제한 (초당, 버스트는 2배)
+ *   -Dadmission.globalRate=50000       : 서버 전체 초당 패킷 수 (버스트는 2배)
+ *   -Dadmission.reserve=0.2            : 전체 버스트 중 COMMAND/ACK 전용으로 남겨둘 비율
+ *   -Dadmission.shed=drop              : 초과 시 처리 (drop=버림, delay=토큰 생길 때까지 읽기 지연, disconnect=연결 끊기)
+ */
+public class AdmissionControl {
+
+    public enum Shed { DROP, DELAY, DISCONNECT }
+
+    // admit() 결과
+    public static final int ADMIT = 0;
+    public static final int SHED = 1;
+    public static final int DISCONNECT = 2;
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final long REPORT_INTERVAL_MS = 1000;
+
+    private final double connRate;
+    private final double priorityRate;
+    private final Map<String, Double> typeRates;
+    private final TokenBucket global;
+    private final double reserveTokens;
+    private final Shed shed;
+
+    private final AtomicLong shedTotal = new AtomicLong();
+
+    public AdmissionControl(double connRate, double priorityRate, Map<String, Double> typeRates,
+                            double globalRate, double reserveRatio, Shed shed) {
+        this.connRate = connRate;
+        this.priorityRate = priorityRate;
+        this.typeRates = typeRates;
+        this.global = new TokenBucket(globalRate, globalRate * 2);
+        this.reserveTokens = globalRate * 2 * reserveRatio;
+        this.shed = shed;
+    }
+
+    // 설정 없으면 기본값으로 사용, admission.enabled=false면 null
+    public static AdmissionControl fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("admission.enabled", "true"))) return null;
+
+        Map<String, Double> typeRates = new HashMap<>();
+        String prefix = "admission.type.";
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                typeRates.put(key.substring(prefix.length()), Double.parseDouble(System.getProperty(key)));
+            }
+        }
+
+        return new AdmissionControl(
+                Double.parseDouble(System.getProperty("admission.rate", "2000")),
+                Double.parseDouble(System.getProperty("admission.priorityRate", "200")),
+                typeRates,
+                Double.parseDouble(System.getProperty("admission.globalRate", "50000")),
+                Double.parseDouble(System.getProperty("admission.reserve", "0.2")),
+                Shed.valueOf(System.getProperty("admission.shed", "drop").toUpperCase()));
+    }
+
+    // 연결마다 1개 (ClientHandler 스레드 전용)
+    public Gate newGate() {
+        return new Gate();
+    }
+
+    public long shedTotal() {
+        return shedTotal.get();
+    }
+
+    // ==========================================
+    // 1. 연결별 관문
+    // ==========================================
+
+    public class Gate {
+        private final TokenBucket conn = new TokenBucket(connRate, connRate * 2);
+        private final TokenBucket priorityConn = new TokenBucket(priorityRate, priorityRate * 2);
+        private final Map<String, TokenBucket> perType = new HashMap<>();
+        private String label = "?";
+        private long shedCount;
+        private long lastReportMs;
+
+        // 장비 ID를 알게 되면 로그용으로 설정
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        /**
+         * 원문 한 줄을 받아도 되는지 판단합니다. (DELAY 모드면 토큰이 생길 때까지 여기서 기다림)
+         * @return ADMIT / SHED / DISCONNECT
+         */
+        public int admit(String line) {
+            String type = peekType(line);
+            boolean priority = "COMMAND".equals(type) || "ACK".equals(type);
+
+            TokenBucket typeBucket = bucketFor(type);
+            TokenBucket connBucket = priority ? priorityConn : conn;
+            double globalFloor = priority ? 0 : reserveTokens;
+
+            while (true) {
+                long now = System.nanoTime();
+                long waitNs = 0;
+                if (typeBucket != null) waitNs = Math.max(waitNs, typeBucket.nanosUntil(now, 0));
+                if (connBucket != null) waitNs = Math.max(waitNs, connBucket.nanosUntil(now, 0));
+                if (waitNs == 0) {
+                    // 전체 버킷은 다른 연결과 공유하므로 마지막에 한 번에 확보
+                    waitNs = global.tryTake(now, globalFloor);
+                    if (waitNs == 0) {
+                        if (typeBucket != null) typeBucket.take();
+                        if (connBucket != null) connBucket.take();
+                        return ADMIT;
+                    }
+                }
+
+                if (shed == Shed.DELAY) {
+                    LockSupport.parkNanos(waitNs);
+                    continue;
+                }
+                return onShed(type);
+            }
+        }
+
+        private TokenBucket bucketFor(String type) {
+            if (type == null) return null;
+            TokenBucket b = perType.get(type);
+            if (b == null) {
+                Double rate = typeRates.get(type);
+                if (rate == null) return null;
+                b = new TokenBucket(rate, rate * 2);
+                perType.put(type, b);
+            }
+            return b;
+        }
+
+        private int onShed(String type) {
+            shedCount++;
+            shedTotal.incrementAndGet();
+
+            if (shed == Shed.DISCONNECT) {
+                printLog("ADMIT", label + " 수신 한도 초과 (" + type + ") -> 연결 종료");
+                return DISCONNECT;
+            }
+
+            long nowMs = System.currentTimeMillis();
+            if (nowMs - lastReportMs >= REPORT_INTERVAL_MS) {
+                lastReportMs = nowMs;
+                printLog("ADMIT", label + " 수신 한도 초과 -> 누적 " + shedCount + "개 폐기 (최근 " + type + ")");
+            }
+            return SHED;
+        }
+    }
+
+    /**
+     * 원문에서 header.type 값만 꺼냅니다. (JSON 파싱 없이 "type" 키를 찾음, 없으면 null)
+     * "device_type" 같은 키는 앞에 따옴표가 붙지 않으므로 걸리지 않습니다.
+     */
+    static String peekType(String line) {
+        return peekField(line, "\"type\"");
+    }
+
+    // 원문에서 문자열 값 하나 꺼냄 (quotedKey = 따옴표 포함 키, 예: "\"sender_id\"")
+    static String peekField(String line, String quotedKey) {
+        int p = line.indexOf(quotedKey);
+        if (p < 0) return null;
+        int i = p + quotedKey.length();
+        int n = line.length();
+        while (i < n && (line.charAt(i) == ' ' || line.charAt(i) == ':')) i++;
+        if (i >= n || line.charAt(i) != '"') return null;
+        int end = line.indexOf('"', i + 1);
+        return end < 0 ? null : line.substring(i + 1, end);
+    }
+
+    // ==========================================
+    // 2. 토큰 버킷
+    // ==========================================
+
+    static class TokenBucket {
+        private final double ratePerNs;
+        private final double burst;
+        private double tokens;
+        private long lastNs;
+
+        TokenBucket(double ratePerSec, double burst) {
+            this.ratePerNs = ratePerSec / 1e9;
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastNs = System.nanoTime();
+        }
+
+        private void refill(long now) {
+            if (now > lastNs) {
+                tokens = Math.min(burst, tokens + (now - lastNs) * ratePerNs);
+                lastNs = now;
+            }
+        }
+
+        // floor 위로 토큰 1개가 남을 때까지 남은 시간 (0이면 지금 가능)
+        long nanosUntil(long now, double floor) {
+            refill(now);
+            double missing = floor + 1 - tokens;
+            return missing <= 0 ? 0 : Math.max(1, (long) (missing / ratePerNs));
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+
+        // 공유 버킷용: 확인 + 차감을 한 번에 (0이면 성공, 아니면 기다릴 시간)
+        synchronized long tryTake(long now, double floor) {
+            long wait = nanosUntil(now, floor);
+            if (wait == 0) take();
+            return wait;
+        }
+    }
+
+    private static void printLog(String tag, String msg) {
+        System.out.printf("[%s] [%-8s] %s%n", LocalTime.now().format(TIME_FMT), tag, msg);
+    }
+}
@@ -1,12 +1,7 @@
 import org.json.JSONObject;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 // [추가] 시간 포맷팅을 위한 클래스 임포트
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
 
 public class CellClient {
     private static final String SERVER_IP = "127.0.0.1";
@@ -18,23 +13,59 @@ public class CellClient {
 
     private String cellId;
 
-    // 두 서버로 각각 메시지를 보내기 위한 출력 스트림
-    private PrintWriter outAgv;
-    private PrintWriter outAmr;
+    // 두 서버로 각각 메시지를 보내기 위한 송신 경로 (연결 스레드가 쓰고 작업 스레드가 읽으므로 volatile)
+    // TCP는 OutboundLink::send, 시뮬레이션은 메모리 채널
+    private volatile Consumer<String> linkAgv;
+    private volatile Consumer<String> linkAmr;
+
+    // 작업 슬롯/대기열 관리 (공용 타이머 사용)
+    private final CellScheduler scheduler;
+
+    // 로그 시각 (시뮬레이션에서는 가상 시계)
+    private final FactoryClock clock;
+    private boolean logging = true;
 
     public CellClient(String cellId) {
+        this(cellId, null);
+    }
+
+    /**
+     * @param clock 작업 시간용 시계 (null이면 셀 공용 타이머 스레드)
+     */
+    public CellClient(String cellId, FactoryClock clock) {
         this.cellId = cellId;
+        this.clock = (clock != null) ? clock : FactoryClock.SYSTEM;
+        CellScheduler.Listener listener = new CellScheduler.Listener() {
+            @Override
+            public void onWorkStarted(String robotId, String processType) {
+                log("== [" + cellId + "] 작업 시작! 대상: " + robotId + " (" + processType + ")");
+                broadcastStatus("작업 시작 (Robot: " + robotId + ")", robotId, "WORK_STARTED");
+            }
+
+            @Override
+            public void onWorkFinished(String robotId, String processType) {
+                log("== [" + cellId + "] 작업 완료! 대상: " + robotId);
+                broadcastStatus("작업 완료. 로봇 배출 대기. (Robot: " + robotId + ")", robotId, "WORK_FINISHED");
+            }
+        };
+        this.scheduler = (clock != null) ? new CellScheduler(cellId, clock, listener) : new CellScheduler(cellId, listener);
+    }
+
+    // 대규모 시뮬레이션에서 셀별 로그 끄기
+    public void setLogging(boolean logging) {
+        this.logging = logging;
     }
 
     // [추가] 로그 출력 헬퍼 메서드 (System.out.println 대신 사용)
     private void log(String msg) {
-        String time = LocalTime.now().format(TIME_FMT);
+        if (!logging) return;
+        String time = clock.localTime().format(TIME_FMT);
         System.out.println("[" + time + "] " + msg);
     }
 
     // [추가] 에러 로그 출력 헬퍼
     private void logError(String msg) {
-        String time = LocalTime.now().format(TIME_FMT);
+        String time = clock.localTime().format(TIME_FMT);
         System.err.println("[" + time + "] " + msg);
     }
 
@@ -44,39 +75,47 @@ public class CellClient {
         // 1. AGV 서버 연결 스레드 시작
         new Thread(() -> connectToServer(PORT_AGV, "AGV_SERVER")).start();
 
-        // 2. AMR 서버 연결 스레드 시작
-        new Thread(() -> connectToServer(PORT_AMR, "AMR_SERVER")).start();
+        // 2. 서버 간 버스가 없을 때만 AMR 서버에도 직접 연결
+        if (dualLink()) {
+            new Thread(() -> connectToServer(PORT_AMR, "AMR_SERVER")).start();
+        }
+    }
+
+    /**
+     * -Dcell.dualLink=true|false 로 지정, 없으면 버스가 있을 때 단일 연결 (AGV 서버가 버스로 AMR 서버에 전달):
+     *   - 같은 JVM의 서버가 셀 패킷을 구독 중 (ServerLauncher)
+     *   - 배치 설정에 bus.listen / bus.connect가 있음 (따로 뜬 서버들이 버스 링크로 연결)
+     * 둘 다 없으면 따로 뜬 서버가 셀 패킷을 받을 길이 없으므로 두 서버에 각각 연결
+     */
+    static boolean dualLink() {
+        String value = System.getProperty("cell.dualLink");
+        if (value != null) return Boolean.parseBoolean(value);
+        return !ServerBus.isConfigured() && !ServerBus.get().hasSubscribers(ServerBus.TOPIC_CELL_PACKET);
     }
 
     // 공통 연결 로직 (포트와 서버 타입만 다르게 받음)
+    // 끊기면 재접속 + 세션 재개 (링크는 끊긴 동안에도 유지, 상태 패킷은 보관했다가 재개 때 전송)
     private void connectToServer(int port, String serverType) {
-        try {
-            Socket socket = new Socket(SERVER_IP, port);
-            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-            // 출력 스트림 저장 (상태 전송용)
-            if (serverType.equals("AGV_SERVER")) this.outAgv = out;
-            else this.outAmr = out;
+        // 송신 전용 스레드 사용 (상태 전송용, TCP는 OutboundLink)
+        SessionLink link = new SessionLink(cellId, SERVER_IP, port, cellId + "-" + serverType, true);
 
+        link.run(sink -> {
             log(">> [" + cellId + "] " + serverType + "(Port:" + port + ") 연결 성공");
+            attach(serverType, sink);
+        }, line -> handleMessage(line, serverType));
+    }
 
-            // 초기 상태 전송 (연결된 서버에 신고)
-            sendStatus(out, "INACTIVE", "대기 중 (Connected to " + serverType + ")");
-
-            // 수신 대기 루프
-            String line;
-            while ((line = in.readLine()) != null) {
-                handleMessage(line, serverType);
-            }
+    // 송신 경로 공개 + 초기 상태 전송 (TCP 연결 / 시뮬레이션 공용)
+    void attach(String serverType, Consumer<String> sink) {
+        if (serverType.equals("AGV_SERVER")) this.linkAgv = sink;
+        else this.linkAmr = sink;
 
-        } catch (IOException e) {
-            logError("!! [" + cellId + "] " + serverType + " 연결 실패/종료: " + e.getMessage());
-        }
+        // 초기 상태 전송 (연결된 서버에 신고)
+        sink.accept(buildStatusPacket("대기 중 (Connected to " + serverType + ")", scheduler.snapshot(), null, null));
     }
 
     // 메시지 처리 (어느 서버에서 왔는지 구분)
-    private void handleMessage(String jsonStr, String serverType) {
+    void handleMessage(String jsonStr, String serverType) {
         try {
             JSONObject root = new JSONObject(jsonStr);
             JSONObject header = root.getJSONObject("header");
@@ -106,8 +145,16 @@ public class CellClient {
                     }
                 }
 
-                // 작업 시뮬레이션 시작
-                simulateWork(robotId, serverType);
+                // 작업 요청 (빈 슬롯 없으면 대기열)
+                String processType = CellScheduler.DEFAULT_PROCESS;
+                int priority = 0;
+                if (body.has("payload")) {
+                    JSONObject payload = body.getJSONObject("payload");
+                    processType = payload.optString("process_type", processType);
+                    priority = payload.optInt("priority", 0);
+                }
+                log("== [" + cellId + "] 작업 요청: " + robotId + " (" + serverType + ", 대기 " + scheduler.queueLength() + ")");
+                scheduler.submit(robotId, processType, priority);
             }
 
         } catch (Exception e) {
@@ -115,53 +162,50 @@ public class CellClient {
         }
     }
 
-    // 작업 시뮬레이션
-    private void simulateWork(String robotId, String sourceServer) {
-        new Thread(() -> {
-            try {
-                log("== [" + cellId + "] 작업 시작! 대상: " + robotId + " (" + sourceServer + ")");
-
-                // 1. 가동 중 상태 전송 (모든 서버에 알림 - 동기화)
-                broadcastStatus("ACTIVE", "작업 시작 (Robot: " + robotId + ")");
-
-                Thread.sleep(3000); // 3초간 작업 (용접, 조립 등)
-
-                log("== [" + cellId + "] 작업 완료! 대상: " + robotId);
-
-                // 2. 작업 완료 및 대기 상태 전송
-                broadcastStatus("INACTIVE", "작업 완료. 로봇 배출 대기.");
-
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }).start();
-    }
-
     // 모든 연결된 서버에 상태 전송 (Broadcast)
-    private synchronized void broadcastStatus(String mode, String logText) {
-        if (outAgv != null) sendStatus(outAgv, mode, logText);
-        if (outAmr != null) sendStatus(outAmr, mode, logText);
+    // 패킷은 한 번만 직렬화해서 각 링크 큐에 넣음 -> 락 없음, 소켓 대기 없음
+    private void broadcastStatus(String logText, String robotId, String event) {
+        String packet = buildStatusPacket(logText, scheduler.snapshot(), robotId, event);
+
+        Consumer<String> agv = linkAgv;
+        Consumer<String> amr = linkAmr;
+        if (agv != null) agv.accept(packet);
+        if (amr != null) amr.accept(packet);
     }
 
-    // 실제 전송 헬퍼
-    private void sendStatus(PrintWriter out, String mode, String logText) {
-        if (out == null) return;
+    // STATUS 패킷 생성 (모드는 스냅샷 시점의 슬롯 점유 상태로 결정)
+    // robotId/event: 작업 시작/완료 보고일 때 대상 로봇과 WORK_STARTED/WORK_FINISHED (서버가 다음 작업 배정에 사용)
+    private String buildStatusPacket(String logText, CellScheduler.Snapshot snap, String robotId, String event) {
+        String mode = snap.busySlots > 0 ? "ACTIVE" : "INACTIVE";
 
         JSONObject json = new JSONObject();
 
         JSONObject header = new JSONObject();
+        header.put("packet_id", java.util.UUID.randomUUID().toString());
+        header.put("seq", JsonPacketBuilder.nextSeq(cellId));
         header.put("type", "STATUS");
         header.put("sender_id", cellId);
         header.put("receiver_id", "SERVER"); // 수신자는 각 서버
-        header.put("timestamp", java.time.LocalDateTime.now().toString());
+        header.put("timestamp", java.time.LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(clock.now()), clock.zone()).toString());
         header.put("log_text", "[Cell상태] " + logText);
         json.put("header", header);
 
         JSONObject body = new JSONObject();
         body.put("device_type", "CELL");
         body.put("mode", mode);
+        // 작업 슬롯 / 대기열 / 가동률
+        body.put("busy_slots", snap.busySlots);
+        body.put("total_slots", scheduler.slots());
+        body.put("queue_length", snap.queueLength);
+        body.put("utilization", Math.round(snap.utilization * 1000) / 1000.0);
+        // 스케줄러 상태 버전 (작업 스레드끼리 순서가 뒤바뀌어 도착해도 큰 값이 최신)
+        body.put("state_version", snap.version);
+        if (robotId != null) {
+            body.put("robot_id", robotId);
+            body.put("event", event);
+        }
         json.put("body", body);
 
-        out.println(json.toString());
+        return json.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * [셀 작업 스케줄러] 셀마다 병렬 작업 슬롯과 대기열(우선순위 -> 도착 순)을 두고,
+ * 작업 완료는 공용 타이머(FactoryClock)로 처리합니다.
+ * (로봇 도착마다 스레드를 만들고 sleep 하지 않으므로, 셀 수천 개도 스레드 몇 개로 돌아감)
+ * 시뮬레이션에서는 가상 시계를 넘겨서 같은 로직을 이벤트 큐로 실행합니다.
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dcell.slots=1                    : 셀당 동시 작업 수
+ *   -Dcell.duration.DEFAULT=3000      : 공정별 작업 시간(ms), 예) -Dcell.duration.WELDING=5000
+ *   -Dcell.schedulerThreads=2         : 공용 타이머 스레드 수
+ */
+public class CellScheduler {
+
+    // 작업 시작/종료 알림 (CellClient가 상태 보고에 사용)
+    public interface Listener {
+        void onWorkStarted(String robotId, String processType);
+
+        void onWorkFinished(String robotId, String processType);
+    }
+
+    public static final String DEFAULT_PROCESS = "DEFAULT";
+    private static final long DEFAULT_DURATION_MS = 3000;
+
+    // 모든 셀이 공유하는 타이머
+    private static final ScheduledExecutorService SHARED_EXECUTOR =
+            Executors.newScheduledThreadPool(Integer.getInteger("cell.schedulerThreads", 2), r -> {
+                Thread t = new Thread(r, "cell-scheduler");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // 공정 타입별 작업 시간 (ms)
+    private static final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    private final String cellId;
+    private final int slots;
+    private final FactoryClock clock;
+    private final Listener listener;
+
+    // 대기열: 우선순위 높은 순 -> 같은 우선순위는 먼저 온 순
+    private final PriorityQueue<WorkItem> waiting = new PriorityQueue<>();
+    private long arrivalSeq = 0;
+    private int busySlots = 0;
+
+    // 슬롯/대기열이 바뀔 때마다 증가 (상태 보고 순서 판별용)
+    private long version = 0;
+
+    // 가동률 계산용 (슬롯 * 시간 누적)
+    private final long createdAt;
+    private long lastChangeAt;
+    private long busySlotMs = 0;
+
+    public CellScheduler(String cellId, Listener listener) {
+        this(cellId, FactoryClock.of(SHARED_EXECUTOR), listener);
+    }
+
+    public CellScheduler(String cellId, FactoryClock clock, Listener listener) {
+        this(cellId, Integer.getInteger("cell.slots", 1), clock, listener);
+    }
+
+    public CellScheduler(String cellId, int slots, ScheduledExecutorService executor, Listener listener) {
+        this(cellId, slots, FactoryClock.of(executor), listener);
+    }
+
+    public CellScheduler(String cellId, int slots, FactoryClock clock, Listener listener) {
+        if (slots < 1) throw new IllegalArgumentException("slots must be >= 1: " + slots);
+        this.cellId = cellId;
+        this.slots = slots;
+        this.clock = clock;
+        this.listener = listener;
+        this.createdAt = clock.now();
+        this.lastChangeAt = createdAt;
+    }
+
+    // 공정별 작업 시간 (프로퍼티 -> 없으면 기본값)
+    public static long durationOf(String processType) {
+        return durations.computeIfAbsent(processType,
+                type -> Long.getLong("cell.duration." + type, Long.getLong("cell.duration." + DEFAULT_PROCESS, DEFAULT_DURATION_MS)));
+    }
+
+    public static void setDuration(String processType, long durationMs) {
+        durations.put(processType, durationMs);
+    }
+
+    // ==========================================
+    // 1. 작업 요청
+    // ==========================================
+
+    /**
+     * 로봇 도착 시 호출. 빈 슬롯이 있으면 바로 시작하고, 없으면 대기열에 넣습니다.
+     * @param priority 클수록 먼저 처리
+     */
+    public void submit(String robotId, String processType, int priority) {
+        WorkItem started;
+        synchronized (this) {
+            waiting.add(new WorkItem(robotId, processType, priority, arrivalSeq++));
+            version++;
+            started = pollStartable();
+        }
+        if (started != null) begin(started);
+    }
+
+    // 빈 슬롯이 있으면 대기열에서 하나 꺼내서 슬롯 점유 (synchronized 안에서 호출)
+    private WorkItem pollStartable() {
+        if (busySlots >= slots || waiting.isEmpty()) return null;
+        accumulate();
+        busySlots++;
+        version++;
+        return waiting.poll();
+    }
+
+    private void begin(WorkItem item) {
+        listener.onWorkStarted(item.robotId, item.processType);
+        clock.schedule(durationOf(item.processType), () -> finish(item));
+    }
+
+    private void finish(WorkItem item) {
+        synchronized (this) {
+            accumulate();
+            busySlots--;
+            version++;
+        }
+        listener.onWorkFinished(item.robotId, item.processType);
+
+        WorkItem next;
+        synchronized (this) {
+            next = pollStartable();
+        }
+        if (next != null) begin(next);
+    }
+
+    // ==========================================
+    // 2. 상태 조회
+    // ==========================================
+
+    public synchronized int busySlots() {
+        return busySlots;
+    }
+
+    public synchronized int queueLength() {
+        return waiting.size();
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    public String cellId() {
+        return cellId;
+    }
+
+    // 생성 이후 가동률 (0.0 ~ 1.0)
+    public synchronized double utilization() {
+        accumulate();
+        long elapsed = lastChangeAt - createdAt;
+        return elapsed <= 0 ? 0.0 : busySlotMs / (double) (elapsed * slots);
+    }
+
+    // 상태 보고용: 슬롯/대기열/가동률/버전을 한 번에 읽음
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(busySlots, waiting.size(), utilization(), version);
+    }
+
+    private void accumulate() {
+        long now = clock.now();
+        busySlotMs += (now - lastChangeAt) * busySlots;
+        lastChangeAt = now;
+    }
+
+    // --- 상태 스냅샷 ---
+    public static final class Snapshot {
+        public final int busySlots;
+        public final int queueLength;
+        public final double utilization;
+        public final long version;
+
+        Snapshot(int busySlots, int queueLength, double utilization, long version) {
+            this.busySlots = busySlots;
+            this.queueLength = queueLength;
+            this.utilization = utilization;
+            this.version = version;
+        }
+    }
+
+    // --- 대기 작업 ---
+    private static class WorkItem implements Comparable<WorkItem> {
+        private final String robotId;
+        private final String processType;
+        private final int priority;
+        private final long seq;
+
+        WorkItem(String robotId, String processType, int priority, long seq) {
+            this.robotId = robotId;
+            this.processType = processType;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(WorkItem o) {
+            if (priority != o.priority) return Integer.compare(o.priority, priority);
+            return Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * [서버 클러스터] 여러 서버 노드가 장비 소유권(어느 노드에 접속했는지)을 공유하고,
+ * 다른 노드에 붙은 장비로 가는 COMMAND를 노드 간 링크로 전달합니다.
+ * 각 노드는 자기가 웹소켓으로 중계한 패킷을 다른 노드에도 뿌려서, 어느 노드의 웹소켓에서든 전체 플릿을 볼 수 있게 합니다.
+ *
+ * 설정 (시스템 프로퍼티, cluster.node가 없으면 단일 서버로 동작):
+ *   -Dcluster.node=N1 -Dcluster.port=9101 -Dcluster.peers=N2@127.0.0.1:9102,N3@127.0.0.1:9103
+ *
+ * 노드 간 프로토콜 (한 줄 = 한 메시지):
+ *   HELLO <node> / OWN <device> <node> / DROP <device> <node> / FWD <device> <json> / FLEET <json>
+ * 나가는 링크는 OutboundLink (패킷 처리 스레드는 큐에 넣기만 하고, 끊긴 링크는 send 실패로 바로 알 수 있음)
+ */
+public class ClusterNode {
+
+    // 서버 쪽에 전달할 콜백
+    public interface Handler {
+        // 로컬에 접속한 장비에게 패킷 전송 (성공 시 true)
+        boolean deliverLocal(String deviceId, String jsonStr);
+
+        // 다른 노드에서 넘어온 패킷을 로컬 웹소켓으로 방송
+        void broadcastFleet(String jsonStr);
+    }
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private final String nodeId;
+    private final int port;
+    private final Map<String, String> peerAddresses; // nodeId -> host:port
+    private final Handler handler;
+
+    // 장비 소유권 (deviceId -> nodeId)
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+
+    // 다른 노드로 나가는 링크 (nodeId -> 송신 링크)
+    private final Map<String, OutboundLink> peerLinks = new ConcurrentHashMap<>();
+
+    public ClusterNode(String nodeId, int port, Map<String, String> peerAddresses, Handler handler) {
+        this.nodeId = nodeId;
+        this.port = port;
+        this.peerAddresses = peerAddresses;
+        this.handler = handler;
+    }
+
+    // 시스템 프로퍼티로 노드 생성 (클러스터 미설정 시 null)
+    public static ClusterNode fromSystemProperties(Handler handler) {
+        String nodeId = System.getProperty("cluster.node");
+        if (nodeId == null || nodeId.isEmpty()) return null;
+
+        int port = Integer.getInteger("cluster.port", 9100);
+        Map<String, String> peers = new ConcurrentHashMap<>();
+        String peerList = System.getProperty("cluster.peers", "");
+        for (String entry : peerList.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int at = entry.indexOf('@');
+            if (at < 0) throw new IllegalArgumentException("cluster.peers 형식 오류 (node@host:port): " + entry);
+            peers.put(entry.substring(0, at), entry.substring(at + 1));
+        }
+        return new ClusterNode(nodeId, port, peers, handler);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void start() {
+        // 1. 다른 노드의 접속 수신
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        // 2. 각 피어로 나가는 링크 (끊기면 재접속)
+        for (Map.Entry<String, String> peer : peerAddresses.entrySet()) {
+            Thread t = new Thread(() -> connectLoop(peer.getKey(), peer.getValue()), "cluster-link-" + peer.getKey());
+            t.setDaemon(true);
+            t.start();
+        }
+        log("노드 " + nodeId + " 가동 (Port: " + port + ", 피어 " + peerAddresses.size() + "개)");
+    }
+
+    // ==========================================
+    // 1. 소유권 관리
+    // ==========================================
+
+    public void claim(String deviceId) {
+        owners.put(deviceId, nodeId);
+        sendToAllPeers("OWN " + deviceId + " " + nodeId);
+    }
+
+    public void release(String deviceId) {
+        if (owners.remove(deviceId, nodeId)) {
+            sendToAllPeers("DROP " + deviceId + " " + nodeId);
+        }
+    }
+
+    public String ownerOf(String deviceId) {
+        return owners.get(deviceId);
+    }
+
+    // ==========================================
+    // 2. 전달 / 방송
+    // ==========================================
+
+    /**
+     * 다른 노드에 붙은 장비로 패킷을 전달합니다.
+     * @return 소유 노드 링크 큐에 넣었으면 true (소유자를 모르거나 링크가 없거나 끊겼거나 큐가 차면 false)
+     */
+    public boolean forward(String deviceId, String jsonStr) {
+        String owner = owners.get(deviceId);
+        if (owner == null || owner.equals(nodeId)) return false;
+
+        OutboundLink link = peerLinks.get(owner);
+        if (link == null) return false;
+
+        if (link.send("FWD " + deviceId + " " + jsonStr)) return true;
+        if (link.isClosed()) dropPeer(owner, link);
+        return false;
+    }
+
+    // 로컬에서 웹소켓으로 중계한 패킷을 다른 노드에도 공유
+    public void publishFleet(String jsonStr) {
+        sendToAllPeers("FLEET " + jsonStr);
+    }
+
+    private void sendToAllPeers(String line) {
+        for (Map.Entry<String, OutboundLink> e : peerLinks.entrySet()) {
+            if (!e.getValue().send(line) && e.getValue().isClosed()) dropPeer(e.getKey(), e.getValue());
+        }
+    }
+
+    // 끊긴 링크 정리: 그 노드 소유 장비도 잊음 (호출한 쪽은 다른 경로로 전송, 재접속 후 OWN으로 다시 받음)
+    private void dropPeer(String peerId, OutboundLink link) {
+        if (peerLinks.remove(peerId, link)) {
+            owners.values().removeIf(peerId::equals);
+            log(peerId + " 링크 끊김 감지");
+        }
+    }
+
+    // ==========================================
+    // 3. 링크 처리
+    // ==========================================
+
+    private void connectLoop(String peerId, String address) {
+        int colon = address.lastIndexOf(':');
+        String host = address.substring(0, colon);
+        int peerPort = Integer.parseInt(address.substring(colon + 1));
+
+        while (true) {
+            OutboundLink out = null;
+            try (Socket socket = new Socket(host, peerPort)) {
+                out = new OutboundLink("cluster-" + peerId, socket.getOutputStream());
+                out.send("HELLO " + nodeId);
+
+                // 내가 가진 장비 목록을 먼저 알려줌 (상태 동기화)
+                for (Map.Entry<String, String> e : owners.entrySet()) {
+                    if (e.getValue().equals(nodeId)) out.send("OWN " + e.getKey() + " " + nodeId);
+                }
+                peerLinks.put(peerId, out);
+                log(peerId + " 링크 연결 (" + address + ")");
+
+                // 출력 전용 링크 -> 상대가 끊을 때까지 대기
+                while (socket.getInputStream().read() != -1) { /* ignore */ }
+            } catch (IOException e) {
+                // 상대 노드 아직 안 떴거나 끊김
+            } finally {
+                if (out != null) out.close();
+                if (peerLinks.remove(peerId) != null) {
+                    log(peerId + " 링크 해제");
+                }
+                owners.values().removeIf(peerId::equals);
+            }
+
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread t = new Thread(() -> readLink(socket), "cluster-in");
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 다른 노드에서 들어오는 메시지 처리 (입력 전용 링크)
+    private void readLink(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                handleLine(line);
+            }
+        } catch (IOException e) {
+            // 링크 끊김
+        }
+    }
+
+    private void handleLine(String line) {
+        int sp = line.indexOf(' ');
+        if (sp < 0) return;
+        String op = line.substring(0, sp);
+        String rest = line.substring(sp + 1);
+
+        switch (op) {
+            case "OWN": {
+                String[] parts = rest.split(" ", 2);
+                owners.put(parts[0], parts[1]);
+                break;
+            }
+            case "DROP": {
+                String[] parts = rest.split(" ", 2);
+                owners.remove(parts[0], parts[1]);
+                break;
+            }
+            case "FWD": {
+                int sp2 = rest.indexOf(' ');
+                String deviceId = rest.substring(0, sp2);
+                if (!handler.deliverLocal(deviceId, rest.substring(sp2 + 1))) {
+                    log("전달 실패: " + deviceId + " 이 노드에 미접속");
+                }
+                break;
+            }
+            case "FLEET":
+                handler.broadcastFleet(rest);
+                break;
+            case "HELLO":
+                log(rest + " 노드 합류");
+                break;
+            default:
+                log("알 수 없는 클러스터 메시지: " + op);
+        }
+    }
+
+    private void log(String msg) {
+        System.out.printf("[%s] [%-8s] %s%n", LocalTime.now().format(TIME_FMT), "CLUSTER", msg);
+    }
+}
@@ -0,0 +1,279 @@
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * [대시보드 델타 스트림] 웹소켓 구독자를 두 가지 방식으로 나눠서 보냅니다.
+ *   - 기본 (ws://host:9002)                       : 지금처럼 패킷 원문 그대로
+ *   - 델타 (ws://host:9002/?stream=delta&group=ops) : 장비별 상태에서 바뀐 필드만
+ *
+ * 델타 그룹은 장비별로 "마지막으로 보낸 상태"를 기억하고 STATUS/LOCATION이 오면 바뀐 필드만 보냅니다.
+ * 주기적으로(업데이트 N회 또는 N ms마다) 전체 상태(keyframe)를 다시 보내고, 새로 들어온 구독자에게는
+ * 접속 직후 모든 장비의 keyframe을 보냅니다. 그 밖의 패킷(COMMAND/ACK 등)은 원문 그대로 보냅니다.
+ *
+ * 메시지 형식 (body 필드는 "coordinates.last_qr_scanned" 처럼 점으로 펼침):
+ *   {"op":"key","id":"AGV_01","ty":"LOCATION","ts":"12:00:01","state":{...전체...}}
+ *   {"op":"delta","id":"AGV_01","ty":"LOCATION","ts":"12:00:02","set":{...바뀐 필드...}}
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Ddashboard.keyframeEvery=100  : 장비별 델타 N개마다 keyframe
+ *   -Ddashboard.keyframeMs=10000   : 장비별 마지막 keyframe 후 N ms 지나면 keyframe
+ *   -Ddashboard.maxBacklog=64      : 송신 대기 프레임이 이보다 많은 연결에는 LOCATION을 건너뜀
+ *                                    (뒤에 오는 COMMAND/ACK 대기 시간 제한, 델타 구독자는 다음 keyframe으로 복구)
+ */
+public class DashboardStream {
+
+    private static final String DEFAULT_GROUP = "default";
+
+    private final WebSocketServer server;
+    private final int keyframeEvery;
+    private final long keyframeMs;
+    private final int maxBacklog;
+    private final AtomicLong telemetrySkipped = new AtomicLong();
+
+    // 원문 구독자 / 델타 구독자 (연결 -> 그룹)
+    private final Set<WebSocket> fullClients = ConcurrentHashMap.newKeySet();
+    private final Map<WebSocket, Group> deltaClients = new ConcurrentHashMap<>();
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    public DashboardStream(WebSocketServer server) {
+        this(server, Integer.getInteger("dashboard.keyframeEvery", 100), Long.getLong("dashboard.keyframeMs", 10000L),
+                Integer.getInteger("dashboard.maxBacklog", 64));
+    }
+
+    public DashboardStream(WebSocketServer server, int keyframeEvery, long keyframeMs, int maxBacklog) {
+        this.server = server;
+        this.keyframeEvery = keyframeEvery;
+        this.keyframeMs = keyframeMs;
+        this.maxBacklog = maxBacklog;
+    }
+
+    // ==========================================
+    // 1. 구독자 관리 (웹소켓 서버 onOpen/onClose에서 호출)
+    // ==========================================
+
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        Map<String, String> query = parseQuery(handshake.getResourceDescriptor());
+        if (!"delta".equals(query.get("stream"))) {
+            fullClients.add(conn);
+            return;
+        }
+
+        Group group = groups.computeIfAbsent(query.getOrDefault("group", DEFAULT_GROUP), k -> new Group());
+        // 먼저 그룹에 넣고 keyframe을 보냄 -> 그 사이 들어온 델타가 빠지지 않음 (장비별 잠금으로 순서 보장)
+        group.members.add(conn);
+        deltaClients.put(conn, group);
+        group.sendSnapshot(conn);
+    }
+
+    public void onClose(WebSocket conn) {
+        fullClients.remove(conn);
+        Group group = deltaClients.remove(conn);
+        if (group != null) group.members.remove(conn);
+    }
+
+    public int deltaSubscribers() {
+        return deltaClients.size();
+    }
+
+    // 송신 대기가 밀려서 건너뛴 LOCATION 전송 수 (연결 기준)
+    public long telemetrySkipped() {
+        return telemetrySkipped.get();
+    }
+
+    // ==========================================
+    // 2. 방송 (relayToDashboard에서 호출, root는 이미 파싱했으면 넘김)
+    // ==========================================
+
+    public void publish(String jsonStr, JSONObject root) {
+        // KPI 등 header 없는 메시지도 root로 들어올 수 있음
+        JSONObject header = (root != null) ? root.optJSONObject("header") : null;
+        boolean telemetry = PriorityLanes.laneOf(header != null
+                ? header.optString("type")
+                : AdmissionControl.peekType(jsonStr)) == PriorityLanes.TELEMETRY;
+
+        // 델타 구독자가 없으면 기존과 똑같이 원문 방송 (이 스트림에 등록된 접속자만 -> 게이트웨이 샤드별 분리)
+        if (deltaClients.isEmpty()) {
+            send(jsonStr, fullClients, telemetry);
+            return;
+        }
+
+        if (!fullClients.isEmpty()) {
+            send(jsonStr, fullClients, telemetry);
+        }
+
+        if (root == null) {
+            try {
+                root = new JSONObject(jsonStr);
+            } catch (Exception e) {
+                return;
+            }
+        }
+        for (Group group : groups.values()) {
+            if (!group.members.isEmpty()) group.publish(jsonStr, root, telemetry);
+        }
+    }
+
+    // 위치 정보는 송신 대기가 밀린 연결을 건너뜀 (다음 위치가 곧 다시 옴)
+    private void send(String msg, Collection<WebSocket> targets, boolean telemetry) {
+        FactoryEvents.DashboardBroadcast event = new FactoryEvents.DashboardBroadcast();
+        event.begin();
+        if (!telemetry) {
+            server.broadcast(msg, targets);
+            event.end(msg, targets.size(), 0);
+            return;
+        }
+        List<WebSocket> ready = new ArrayList<>(targets.size());
+        for (WebSocket conn : targets) {
+            if (backlog(conn) < maxBacklog) {
+                ready.add(conn);
+            } else {
+                telemetrySkipped.incrementAndGet();
+            }
+        }
+        if (!ready.isEmpty()) server.broadcast(msg, ready);
+        event.end(msg, ready.size(), targets.size() - ready.size());
+    }
+
+    private static int backlog(WebSocket conn) {
+        return (conn instanceof WebSocketImpl) ? ((WebSocketImpl) conn).outQueue.size() : 0;
+    }
+
+    // ==========================================
+    // 3. 그룹 / 장비별 마지막 전송 상태
+    // ==========================================
+
+    private class Group {
+        private final Set<WebSocket> members = ConcurrentHashMap.newKeySet();
+        private final Map<String, DeviceView> views = new ConcurrentHashMap<>();
+
+        void publish(String jsonStr, JSONObject root, boolean telemetry) {
+            JSONObject header = root.optJSONObject("header");
+            String type = header != null ? header.optString("type") : "";
+            if (!type.equals("STATUS") && !type.equals("LOCATION")) {
+                send(jsonStr, members, telemetry);
+                return;
+            }
+
+            String deviceId = header.optString("sender_id");
+            DeviceView view = views.computeIfAbsent(deviceId, DeviceView::new);
+
+            // 장비 단위로 잠금 -> 같은 장비의 메시지 순서 유지, 다른 장비끼리는 병렬
+            synchronized (view) {
+                String msg = view.apply(type, header.optString("timestamp"), header.optString("log_text", null),
+                        root.optJSONObject("body"), System.currentTimeMillis());
+                send(msg, members, telemetry);
+            }
+        }
+
+        void sendSnapshot(WebSocket conn) {
+            for (DeviceView view : views.values()) {
+                synchronized (view) {
+                    if (view.lastType != null && conn.isOpen()) conn.send(view.keyframe());
+                }
+            }
+        }
+    }
+
+    private class DeviceView {
+        private final String deviceId;
+        // 마지막으로 보낸 필드 값 (body를 점 경로로 펼친 것)
+        private final Map<String, Object> state = new LinkedHashMap<>();
+        private final Map<String, Object> changed = new LinkedHashMap<>();
+        private String lastType;
+        private String lastTs;
+        private int sinceKeyframe;
+        private long lastKeyframeMs;
+
+        DeviceView(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        // 상태 반영 후 보낼 메시지 (keyframe 또는 델타)
+        String apply(String type, String ts, String logText, JSONObject body, long nowMs) {
+            changed.clear();
+            if (logText != null) diff("log_text", logText);
+            if (body != null) flatten("", body);
+
+            boolean first = lastType == null;
+            lastType = type;
+            lastTs = ts;
+
+            if (first || ++sinceKeyframe >= keyframeEvery || nowMs - lastKeyframeMs >= keyframeMs) {
+                sinceKeyframe = 0;
+                lastKeyframeMs = nowMs;
+                return keyframe();
+            }
+
+            JSONObject msg = head("delta");
+            if (!changed.isEmpty()) msg.put("set", new JSONObject(changed));
+            return msg.toString();
+        }
+
+        String keyframe() {
+            JSONObject msg = head("key");
+            msg.put("state", new JSONObject(state));
+            return msg.toString();
+        }
+
+        private JSONObject head(String op) {
+            JSONObject msg = new JSONObject();
+            msg.put("op", op);
+            msg.put("id", deviceId);
+            msg.put("ty", lastType);
+            msg.put("ts", lastTs);
+            return msg;
+        }
+
+        private void flatten(String prefix, JSONObject obj) {
+            Iterator<String> keys = obj.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = obj.opt(key);
+                if (value instanceof JSONObject) {
+                    flatten(prefix + key + ".", (JSONObject) value);
+                } else {
+                    diff(prefix + key, value);
+                }
+            }
+        }
+
+        private void diff(String path, Object value) {
+            Object prev = state.get(path);
+            boolean same = (prev instanceof JSONArray && value instanceof JSONArray)
+                    ? ((JSONArray) prev).similar(value)
+                    : Objects.equals(prev, value);
+            if (!same) {
+                state.put(path, value);
+                changed.put(path, value);
+            }
+        }
+    }
+
+    // "/?stream=delta&group=ops" -> {stream=delta, group=ops}
+    private static Map<String, String> parseQuery(String resource) {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (resource == null) return query;
+        int q = resource.indexOf('?');
+        if (q < 0) return query;
+        for (String pair : resource.substring(q + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) query.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return query;
+    }
+}
@@ -0,0 +1,107 @@
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * [측정] 대시보드 트래픽에 permessage-deflate를 적용했을 때 CPU 비용 대비 절약되는 바이트를 비교합니다.
+ * 실행: DeflateBench [capture.jsonl]
+ *   - capture.jsonl : PacketJournal 기록 (서버가 웹소켓으로 중계하는 패킷 원문과 같음)
+ *   - 생략 시 JsonPacketBuilder로 만든 AGV/AMR 트래픽 사용
+ *
+ * 웹소켓 압축과 같은 방식(raw deflate + SYNC_FLUSH, 끝 4바이트 제거)으로 계산합니다.
+ */
+public class DeflateBench {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<byte[]> messages = (args.length > 0) ? loadCapture(args[0]) : synthesize(20, 2000);
+        long rawBytes = 0;
+        for (byte[] m : messages) rawBytes += m.length;
+
+        System.out.printf(">> 메시지 %,d개, 원본 %,d bytes (평균 %d bytes)%n",
+                messages.size(), rawBytes, rawBytes / Math.max(messages.size(), 1));
+        System.out.printf("%-9s %-6s %-8s %14s %8s %12s%n", "threshold", "level", "context", "wire bytes", "saved", "CPU ns/msg");
+
+        for (int threshold : new int[]{0, 256, 1024}) {
+            for (int level : new int[]{1, 6}) {
+                for (boolean takeover : new boolean[]{true, false}) {
+                    run(messages, rawBytes, threshold, level, takeover);
+                }
+            }
+        }
+    }
+
+    private static void run(List<byte[]> messages, long rawBytes, int threshold, int level, boolean takeover) {
+        long wire = 0;
+        long bestNs = Long.MAX_VALUE;
+        byte[] out = new byte[64 * 1024];
+
+        // 여러 번 돌려서 가장 빠른 값 사용 (JIT 워밍업 영향 제거)
+        for (int r = 0; r < ROUNDS; r++) {
+            Deflater deflater = new Deflater(level, true);
+            long bytes = 0;
+            long t0 = System.nanoTime();
+            for (byte[] m : messages) {
+                if (m.length < threshold) {
+                    bytes += m.length;
+                    continue;
+                }
+                deflater.setInput(m);
+                int len = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+                bytes += len - 4; // 끝의 00 00 ff ff 는 전송하지 않음
+                if (!takeover) deflater.reset();
+            }
+            long elapsed = System.nanoTime() - t0;
+            deflater.end();
+
+            wire = bytes;
+            bestNs = Math.min(bestNs, elapsed);
+        }
+
+        System.out.printf("%-9d %-6d %-8s %,14d %7.1f%% %12.0f%n",
+                threshold, level, takeover ? "takeover" : "reset",
+                wire, 100.0 * (rawBytes - wire) / rawBytes, bestNs / (double) messages.size());
+    }
+
+    private static List<byte[]> loadCapture(String path) throws IOException {
+        List<byte[]> messages = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JSONObject o = new JSONObject(line);
+                JSONObject packet = o.has("packet") ? o.getJSONObject("packet") : o;
+                messages.add(packet.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return messages;
+    }
+
+    // 장비 N대가 STATUS / LOCATION / ACK를 섞어 보내는 트래픽
+    private static List<byte[]> synthesize(int devices, int rounds) {
+        List<byte[]> messages = new ArrayList<>();
+        for (int r = 0; r < rounds; r++) {
+            for (int d = 0; d < devices; d++) {
+                String id = String.format("AGV_%02d", d + 1);
+                String packet;
+                if (r % 10 == 0) {
+                    packet = JsonPacketBuilder.createStatusPacket(id, r % 20 == 0 ? "ACTIVE" : "INACTIVE", false);
+                } else if (r % 10 == 9) {
+                    packet = JsonPacketBuilder.createAckPacket(id, "TASK_" + r, "CELL_0" + (d % 4 + 1) + " 도착 완료");
+                } else {
+                    packet = JsonPacketBuilder.createLocationPacket(id, "QR_" + (r % 50), "CELL_0" + (d % 4 + 1), r % 10);
+                }
+                messages.add(packet.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return messages;
+    }
+}
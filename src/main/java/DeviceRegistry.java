@@ -0,0 +1,263 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * [장비 사전] 장비 ID(AGV_01, CELL_03 ...)를 등록 시 1회만 정수 슬롯으로 바꿔두고,
+ * 장비별 상태는 슬롯 번호로 인덱싱되는 원시 타입 배열에 저장합니다.
+ * 패킷 처리 경로에서는 슬롯 번호만 사용하므로 문자열 해시/객체 생성이 없습니다.
+ */
+public class DeviceRegistry {
+
+    // 모드 코드 (STATUS.body.mode)
+    public static final byte MODE_UNKNOWN = 0;
+    public static final byte MODE_ACTIVE = 1;
+    public static final byte MODE_INACTIVE = 2;
+
+    public static final int NO_SLOT = -1;
+
+    // 순번 검사 결과
+    public static final int SEQ_OK = 0;
+    public static final int SEQ_GAP = 1;   // 중간 순번 누락
+    public static final int SEQ_LATE = 2;  // 이미 지난 순번 (순서 역전/지연 도착)
+
+    private final int capacity;
+
+    // 장비 ID <-> 슬롯 (등록 시에만 사용)
+    private final Map<String, Integer> idToSlot = new ConcurrentHashMap<>();
+    private final String[] slotToId;
+    private final AtomicInteger size = new AtomicInteger();
+
+    // QR 노드 사전 (QR 문자열 -> 정수 ID)
+    private final Map<String, Integer> qrToId = new ConcurrentHashMap<>();
+    private final Map<Integer, String> qrNames = new ConcurrentHashMap<>();
+    private final AtomicInteger qrCount = new AtomicInteger();
+
+    // 슬롯별 연결 (접속 중일 때만 not null)
+    private final AtomicReferenceArray<Transport.Connection> connections;
+
+    // 슬롯별 세션 토큰 (null = 없음, 재접속한 연결 스레드가 읽으므로 원자 배열)
+    // 토큰만 있으면 슬롯을 가져갈 수 있으므로 추측 불가능한 난수 128비트
+    private static final int SESSION_BYTES = 16;
+    private static final SecureRandom SESSION_RANDOM = new SecureRandom();
+    private final AtomicReferenceArray<String> sessions;
+
+    // 슬롯별 상태 (원시 배열, 슬롯 소유 스레드만 씀)
+    private final byte[] mode;
+    private final boolean[] occupied;
+    private final int[] lastQr;
+    private final String[] lastQrText; // lastQr의 원래 문자열 (같은 QR이 반복되면 사전 조회 생략)
+    private final int[] segmentIndex;
+    // 마지막 수신 시각: 수신 스레드가 쓰고 유휴 감시 스레드가 읽음 -> 원자 배열 (long 쓰기가 쪼개지거나 안 보이는 일 없음)
+    private final AtomicLongArray lastSeen;
+    private final int[] packetCount;
+    private final long[] lastSeq;
+    private final long[] seqMissing;
+    private final int[] seqLate;
+
+    public DeviceRegistry(int capacity) {
+        this.capacity = capacity;
+        this.slotToId = new String[capacity];
+        this.connections = new AtomicReferenceArray<>(capacity);
+        this.sessions = new AtomicReferenceArray<>(capacity);
+        this.mode = new byte[capacity];
+        this.occupied = new boolean[capacity];
+        this.lastQr = new int[capacity];
+        this.lastQrText = new String[capacity];
+        this.segmentIndex = new int[capacity];
+        this.lastSeen = new AtomicLongArray(capacity);
+        this.packetCount = new int[capacity];
+        this.lastSeq = new long[capacity];
+        this.seqMissing = new long[capacity];
+        this.seqLate = new int[capacity];
+        java.util.Arrays.fill(lastQr, -1);
+    }
+
+    // 시스템 프로퍼티(device.capacity)로 크기 지정, 기본 1024대
+    public static DeviceRegistry fromSystemProperties() {
+        return new DeviceRegistry(Integer.getInteger("device.capacity", 1024));
+    }
+
+    // ==========================================
+    // 1. 등록 / 조회
+    // ==========================================
+
+    /**
+     * 장비 ID를 슬롯에 등록합니다. 이미 등록된 ID면 기존 슬롯을 그대로 돌려줍니다.
+     * (재접속해도 같은 슬롯 -> 상태 유지)
+     */
+    public int register(String deviceId) {
+        Integer slot = idToSlot.get(deviceId);
+        if (slot != null) return slot;
+
+        return idToSlot.computeIfAbsent(deviceId, id -> {
+            int s = size.getAndIncrement();
+            if (s >= capacity) {
+                size.decrementAndGet();
+                throw new IllegalStateException("장비 사전 용량 초과 (capacity=" + capacity + ")");
+            }
+            slotToId[s] = id;
+            return s;
+        });
+    }
+
+    // 등록되지 않은 ID면 NO_SLOT
+    public int slotOf(String deviceId) {
+        Integer slot = idToSlot.get(deviceId);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    public String idOf(int slot) {
+        return slotToId[slot];
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    // ==========================================
+    // 2. 연결 관리
+    // ==========================================
+
+    // 연결 시각도 수신으로 간주 (closeIdle이 방금 붙은 연결을 닫지 않도록)
+    public void attach(int slot, Transport.Connection conn, long nowMs) {
+        lastSeen.set(slot, nowMs);
+        connections.set(slot, conn);
+    }
+
+    // 다른 연결이 이미 슬롯을 가져갔다면 건드리지 않음
+    public void detach(int slot, Transport.Connection conn) {
+        connections.compareAndSet(slot, conn, null);
+    }
+
+    public Transport.Connection connection(int slot) {
+        return slot == NO_SLOT ? null : connections.get(slot);
+    }
+
+    public boolean isConnected(int slot) {
+        return connection(slot) != null;
+    }
+
+    // 마지막 수신 후 idleMs가 지난 연결을 닫음 (무선 끊김 등으로 반쯤 열린 연결 정리, 닫은 장비 ID 알림)
+    public void closeIdle(long nowMs, long idleMs, Consumer<String> onClosed) {
+        int n = size();
+        for (int slot = 0; slot < n; slot++) {
+            Transport.Connection conn = connections.get(slot);
+            if (conn != null && nowMs - lastSeen.get(slot) > idleMs) {
+                conn.close();
+                onClosed.accept(slotToId[slot]);
+            }
+        }
+    }
+
+    // 새 로그인 -> 새 세션 토큰 (이전 토큰으로는 더 이상 재개 불가)
+    public String openSession(int slot) {
+        byte[] bytes = new byte[SESSION_BYTES];
+        SESSION_RANDOM.nextBytes(bytes);
+        String token = HexFormat.of().formatHex(bytes);
+        sessions.set(slot, token);
+        return token;
+    }
+
+    // 재접속한 장비가 제시한 토큰이 이 슬롯의 현재 세션인지 (비교 시간으로 토큰이 새지 않도록 고정 시간 비교)
+    public boolean isSession(int slot, String token) {
+        String current = sessions.get(slot);
+        return current != null && token != null && MessageDigest.isEqual(
+                current.getBytes(StandardCharsets.US_ASCII), token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // ==========================================
+    // 3. 상태 갱신 (패킷 처리 경로, 슬롯 소유 스레드에서 호출)
+    // ==========================================
+
+    public void touch(int slot, long nowMs) {
+        lastSeen.set(slot, nowMs);
+        packetCount[slot]++;
+    }
+
+    public void updateStatus(int slot, String modeText, boolean isOccupied) {
+        mode[slot] = encodeMode(modeText);
+        occupied[slot] = isOccupied;
+    }
+
+    // 같은 QR에 머무는 동안은 문자열 비교만 (사전 해시 조회는 QR이 바뀔 때 1번)
+    public void updateLocation(int slot, String qr, int segment) {
+        if (qr == null || !qr.equals(lastQrText[slot])) {
+            lastQr[slot] = internQr(qr);
+            lastQrText[slot] = qr;
+        }
+        segmentIndex[slot] = segment;
+    }
+
+    /**
+     * 송신자 순번 검사. seq=1은 장비 재시작으로 보고 처음부터 다시 셉니다.
+     * @return SEQ_OK / SEQ_GAP / SEQ_LATE
+     */
+    public int checkSequence(int slot, long seq) {
+        long last = lastSeq[slot];
+        if (seq > last || seq == 1) {
+            lastSeq[slot] = seq;
+            if (last > 0 && seq > last + 1) {
+                seqMissing[slot] += seq - last - 1;
+                return SEQ_GAP;
+            }
+            return SEQ_OK;
+        }
+        seqLate[slot]++;
+        return SEQ_LATE;
+    }
+
+    // QR 문자열을 정수 ID로 변환 (처음 보는 QR만 사전에 추가)
+    public int internQr(String qr) {
+        if (qr == null) return -1;
+        Integer id = qrToId.get(qr);
+        if (id != null) return id;
+        return qrToId.computeIfAbsent(qr, k -> {
+            int newId = qrCount.getAndIncrement();
+            qrNames.put(newId, k);
+            return newId;
+        });
+    }
+
+    // QR 정수 ID -> 문자열 (모르는 ID면 null)
+    public String qrName(int qrId) {
+        return qrNames.get(qrId);
+    }
+
+    private static byte encodeMode(String modeText) {
+        if ("ACTIVE".equals(modeText)) return MODE_ACTIVE;
+        if ("INACTIVE".equals(modeText)) return MODE_INACTIVE;
+        return MODE_UNKNOWN;
+    }
+
+    // ==========================================
+    // 4. 상태 조회
+    // ==========================================
+
+    public byte mode(int slot) { return mode[slot]; }
+    public boolean isOccupied(int slot) { return occupied[slot]; }
+    public int lastQr(int slot) { return lastQr[slot]; }
+    public int segmentIndex(int slot) { return segmentIndex[slot]; }
+    public long lastSeen(int slot) { return lastSeen.get(slot); }
+    public int packetCount(int slot) { return packetCount[slot]; }
+    public long lastSeq(int slot) { return lastSeq[slot]; }
+    public long seqMissing(int slot) { return seqMissing[slot]; }
+    public int seqLate(int slot) { return seqLate[slot]; }
+
+    /**
+     * 장비 1대당 상태 배열이 차지하는 바이트 수 (참조 1개는 압축 OOP 기준 4바이트로 계산)
+     * mode(1) + occupied(1) + lastQr(4) + segmentIndex(4) + lastSeen(8) + packetCount(4)
+     * + lastSeq(8) + seqMissing(8) + seqLate(4) + connection/slotToId/session/lastQrText 참조(4+4+4+4)
+     */
+    public static int stateBytesPerDevice() {
+        return Byte.BYTES + 1 + Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES
+                + Long.BYTES + Long.BYTES + Integer.BYTES + 4 + 4 + 4 + 4;
+    }
+}
@@ -0,0 +1,64 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * [측정] DeviceRegistry 장비 1대당 메모리와 패킷 처리 경로의 비용을 측정합니다.
+ * 실행: DeviceRegistryBench [장비 수] (기본 10000)
+ */
+public class DeviceRegistryBench {
+
+    public static void main(String[] args) {
+        int devices = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+
+        // 1. 메모리 측정 (등록 전/후 힙 사용량 차이)
+        String[] ids = new String[devices];
+        for (int i = 0; i < devices; i++) ids[i] = String.format("AGV_%05d", i);
+
+        long before = usedHeap();
+        DeviceRegistry registry = new DeviceRegistry(devices);
+        int[] slots = new int[devices];
+        for (int i = 0; i < devices; i++) slots[i] = registry.register(ids[i]);
+        long after = usedHeap();
+
+        System.out.printf(">> 장비 %d대 등록: 힙 %.1f KB (장비당 %.1f bytes, 상태 배열만 %d bytes)%n",
+                devices, (after - before) / 1024.0, (after - before) / (double) devices,
+                DeviceRegistry.stateBytesPerDevice());
+
+        // 2. 패킷 처리 경로 측정 (슬롯 기반 갱신 -> 할당 0 이어야 함)
+        String[] qrs = {"QR_001", "QR_002", "QR_003", "QR_004"};
+        for (String qr : qrs) registry.internQr(qr);
+
+        int rounds = 200;
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+
+        runUpdates(registry, slots, qrs, rounds); // 워밍업
+
+        long alloc0 = mx.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        runUpdates(registry, slots, qrs, rounds);
+        long t1 = System.nanoTime();
+        long alloc1 = mx.getThreadAllocatedBytes(tid);
+
+        long ops = (long) rounds * devices;
+        System.out.printf(">> 슬롯 갱신 %d회: %.1f ns/op, 할당 %d bytes%n",
+                ops, (t1 - t0) / (double) ops, alloc1 - alloc0);
+    }
+
+    private static void runUpdates(DeviceRegistry registry, int[] slots, String[] qrs, int rounds) {
+        long now = System.currentTimeMillis();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < slots.length; i++) {
+                int slot = slots[i];
+                registry.touch(slot, now);
+                registry.updateStatus(slot, (r & 1) == 0 ? "ACTIVE" : "INACTIVE", (r & 2) == 0);
+                registry.updateLocation(slot, qrs[r & 3], r);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
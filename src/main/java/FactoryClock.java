@@ -0,0 +1,54 @@
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [시계] 장비 동작의 "현재 시각"과 "몇 ms 뒤 실행"을 한곳으로 모읍니다.
+ *   - SYSTEM            : 실제 시계 + 공용 타이머 스레드 (기존 Thread.sleep 동작과 같은 시간 흐름)
+ *   - FactorySimulation : 가상 시계 + 이벤트 큐 (sleep 대신 예약 이벤트, 몇 시간 분량을 몇 초에 실행)
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dclock.threads=2 : SYSTEM 시계의 타이머 스레드 수 (로봇 이동 단계 실행)
+ */
+public interface FactoryClock {
+
+    // 모든 장비가 공유하는 실제 시계
+    FactoryClock SYSTEM = of(Executors.newScheduledThreadPool(Integer.getInteger("clock.threads", 2), r -> {
+        Thread t = new Thread(r, "clock-timer");
+        t.setDaemon(true);
+        return t;
+    }));
+
+    // 현재 시각 (epoch ms)
+    long now();
+
+    // delayMs 뒤에 task 실행 (같은 시각이면 예약한 순서대로)
+    void schedule(long delayMs, Runnable task);
+
+    // 로그 표시용 시간대
+    default ZoneId zone() {
+        return ZoneId.systemDefault();
+    }
+
+    default LocalTime localTime() {
+        return LocalTime.ofInstant(Instant.ofEpochMilli(now()), zone());
+    }
+
+    // 기존 ScheduledExecutorService를 실제 시계로 사용
+    static FactoryClock of(ScheduledExecutorService executor) {
+        return new FactoryClock() {
+            @Override
+            public long now() {
+                return System.currentTimeMillis();
+            }
+
+            @Override
+            public void schedule(long delayMs, Runnable task) {
+                executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+}
@@ -0,0 +1,246 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import org.json.JSONObject;
+
+/**
+ * [JFR 이벤트] 패킷 수명 주기 / 시나리오 타이밍을 Java Flight Recorder에 남깁니다.
+ * 프로파일러는 CPU가 어디서 쓰이는지만 보여주므로, 어느 장비/어느 패킷 타입이 원인인지 이벤트로 연결합니다.
+ *
+ * 모두 기본 꺼짐(@Enabled(false), 스택 트레이스 없음) -> 녹화 중이 아니거나 설정에서 켜지 않으면
+ * shouldCommit()이 false라 필드 채우기/문자열 추출을 하지 않습니다. (이벤트 객체는 JIT가 없앰)
+ *
+ * 켜기 (운영 중에도 가능, factory.jfc = 이 이벤트들만 켜는 설정):
+ *   java -XX:StartFlightRecording:settings=default,settings=factory.jfc,filename=factory.jfr ...
+ *   jcmd <pid> JFR.start settings=default settings=factory.jfc duration=60s filename=factory.jfr
+ * 보기: jfr print --events 'factory.*' factory.jfr  (또는 JMC의 Event Browser > Smart Factory)
+ *
+ * 크기(size)는 패킷 문자열 길이(문자 수)입니다. 본문이 ASCII면 바이트 수와 같습니다.
+ */
+public final class FactoryEvents {
+
+    private FactoryEvents() {
+    }
+
+    // 원문에서 값 꺼내기 (커밋할 때만 호출)
+    private static String senderOf(String json) {
+        return AdmissionControl.peekField(json, "\"sender_id\"");
+    }
+
+    // ==========================================
+    // 1. 서버 수신
+    // ==========================================
+
+    @Name("factory.PacketIngress")
+    @Label("Packet Ingress")
+    @Description("장비 연결에서 읽은 패킷 1개의 수신 처리 (수신 제어 + 파싱 + 상태 갱신 + 레인 투입)")
+    @Category({"Smart Factory", "Packet"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class PacketIngress extends Event {
+        @Label("Server")
+        String server;
+        @Label("Device ID")
+        String deviceId;
+        @Label("Message Type")
+        String type;
+        @Label("Size")
+        int size;
+        @Label("Remote")
+        String remote;
+        @Label("Verdict")
+        @Description("ADMIT / SHED / DISCONNECT (AdmissionControl)")
+        String verdict;
+
+        void end(String server, String deviceId, String line, Transport.Connection conn, int verdict) {
+            if (!shouldCommit()) return;
+            this.server = server;
+            this.deviceId = (deviceId != null) ? deviceId : senderOf(line);
+            this.type = AdmissionControl.peekType(line);
+            this.size = line.length();
+            this.remote = conn.remote();
+            this.verdict = verdict == AdmissionControl.ADMIT ? "ADMIT"
+                    : verdict == AdmissionControl.SHED ? "SHED" : "DISCONNECT";
+            commit();
+        }
+    }
+
+    @Name("factory.PacketParse")
+    @Label("Packet Parse")
+    @Description("수신 패킷 JSON 파싱 (org.json)")
+    @Category({"Smart Factory", "Packet"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class PacketParse extends Event {
+        @Label("Server")
+        String server;
+        @Label("Device ID")
+        String deviceId;
+        @Label("Message Type")
+        String type;
+        @Label("Size")
+        int size;
+
+        void end(String server, String deviceId, String type, String jsonStr) {
+            if (!shouldCommit()) return;
+            this.server = server;
+            this.deviceId = deviceId;
+            this.type = type;
+            this.size = jsonStr.length();
+            commit();
+        }
+    }
+
+    // ==========================================
+    // 2. 서버 송신
+    // ==========================================
+
+    @Name("factory.DashboardBroadcast")
+    @Label("Dashboard Broadcast")
+    @Description("대시보드 웹소켓 방송 1회 (서버 대시보드 / 게이트웨이 샤드)")
+    @Category({"Smart Factory", "Dashboard"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class DashboardBroadcast extends Event {
+        @Label("Device ID")
+        String deviceId;
+        @Label("Message Type")
+        String type;
+        @Label("Size")
+        int size;
+        @Label("Recipients")
+        int recipients;
+        @Label("Skipped")
+        @Description("송신 대기가 밀려 건너뛴 접속 수 (위치 패킷만)")
+        int skipped;
+
+        void end(String msg, int recipients, int skipped) {
+            if (!shouldCommit()) return;
+            this.deviceId = senderOf(msg);
+            this.type = AdmissionControl.peekType(msg);
+            this.size = msg.length();
+            this.recipients = recipients;
+            this.skipped = skipped;
+            commit();
+        }
+    }
+
+    @Name("factory.DeviceSend")
+    @Label("Device Send")
+    @Description("서버 -> 장비 패킷 전송 (TCP는 소켓 쓰기, memory는 큐 투입)")
+    @Category({"Smart Factory", "Packet"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class DeviceSend extends Event {
+        @Label("Server")
+        String server;
+        @Label("Device ID")
+        String deviceId;
+        @Label("Message Type")
+        String type;
+        @Label("Size")
+        int size;
+        @Label("Remote")
+        String remote;
+
+        void end(String server, String deviceId, String jsonStr, Transport.Connection conn) {
+            if (!shouldCommit()) return;
+            this.server = server;
+            this.deviceId = deviceId;
+            this.type = AdmissionControl.peekType(jsonStr);
+            this.size = jsonStr.length();
+            this.remote = conn.remote();
+            commit();
+        }
+    }
+
+    // ==========================================
+    // 3. 타이밍 (시나리오 / 장비 이동)
+    // ==========================================
+
+    @Name("factory.ScenarioStep")
+    @Label("Scenario Step")
+    @Description("시나리오 단계 실행 (예정 시각 대비 실제 시각, 지속 시간 = 단계 처리)")
+    @Category({"Smart Factory", "Scenario"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class ScenarioStep extends Event {
+        @Label("Manager")
+        String manager;
+        @Label("Scenario ID")
+        String scenarioId;
+        @Label("Sender ID")
+        String deviceId;
+        @Label("Receiver ID")
+        String receiverId;
+        @Label("Message Type")
+        String type;
+        @Label("Scheduled Offset")
+        @Timespan(Timespan.MILLISECONDS)
+        long scheduledOffset;
+        @Label("Actual Offset")
+        @Timespan(Timespan.MILLISECONDS)
+        long actualOffset;
+        @Label("Lateness")
+        @Timespan(Timespan.MILLISECONDS)
+        long lateness;
+
+        void end(String manager, String scenarioId, JSONObject step, long scheduledOffset, long actualOffset) {
+            if (!shouldCommit()) return;
+            this.manager = manager;
+            this.scenarioId = scenarioId;
+            this.deviceId = step.optString("sender_id");
+            this.receiverId = step.optString("receiver_id");
+            this.type = step.optString("message_type");
+            this.scheduledOffset = scheduledOffset;
+            this.actualOffset = actualOffset;
+            this.lateness = actualOffset - scheduledOffset;
+            commit();
+        }
+    }
+
+    @Name("factory.MovementStep")
+    @Label("Movement Step")
+    @Description("장비 이동 단계 (MOVE = 구간 통과 + LOCATION, ARRIVE = 도착 ACK), 지연 = 예약 시각 대비 실행 시각 (장비 시계 기준)")
+    @Category({"Smart Factory", "Device"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class MovementStep extends Event {
+        @Label("Device ID")
+        String deviceId;
+        @Label("Task ID")
+        String taskId;
+        @Label("Phase")
+        String phase;
+        @Label("Waypoint")
+        int waypoint;
+        @Label("QR")
+        String qr;
+        @Label("Message Type")
+        String type;
+        @Label("Size")
+        int size;
+        @Label("Lateness")
+        @Timespan(Timespan.MILLISECONDS)
+        long lateness;
+
+        void end(String deviceId, String taskId, String phase, int waypoint, String qr, String packet, long lateness) {
+            if (!shouldCommit()) return;
+            this.deviceId = deviceId;
+            this.taskId = taskId;
+            this.phase = phase;
+            this.waypoint = waypoint;
+            this.qr = qr;
+            this.type = AdmissionControl.peekType(packet);
+            this.size = packet.length();
+            this.lateness = lateness;
+            commit();
+        }
+    }
+}
@@ -14,6 +14,8 @@ public class FactoryLauncher {
 
         new CellClient("CELL_04").start();
 
-        System.out.println(">> 모든 셀이 ACS 서버에 접속했습니다.");
+        System.out.println(CellClient.dualLink()
+                ? ">> 모든 셀이 ACS/AMR 서버에 접속했습니다."
+                : ">> 모든 셀이 ACS 서버에 접속했습니다. (AMR 서버에는 이벤트 버스로 전달)");
     }
 }
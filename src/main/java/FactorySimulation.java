@@ -0,0 +1,462 @@
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * [시뮬레이션] 서버 / 로봇(AGVClient, AMRClient) / 셀(CellClient)을 한 프로세스에서
+ * 가상 시계 + 이벤트 큐 1개로 실행합니다.
+ *   - Thread.sleep / 타이머 -> 가상 시각에 예약된 이벤트 (FactoryClock)
+ *   - 소켓 -> 메모리 채널 (보낸 순서 유지 + 지연)
+ *   - 무작위 요소(작업 배정, 경로 길이, 채널 지연, 접속 순서)는 모두 seed 하나에서 나옴
+ * -> 대규모 플릿의 8시간 근무를 몇 초 만에 돌리고, 같은 seed면 항상 같은 결과 (마지막 trace 값으로 확인)
+ *
+ * 서버 쪽은 소켓/스레드 없이 실제 서버와 같은 처리 로직(ServerCore: 상태 갱신, 셀 패킷 공유, ACK 대기/재전송,
+ * 시나리오 단계)을 가상 시각으로 실행하고, 시뮬레이션은 간단한 배차(로봇 -> 셀 -> 작업 완료 -> 다음 셀)만 더합니다.
+ *
+ * 실행: FactorySimulation [AGV 수 (기본 100)] [AMR 수 (기본 20)] [셀 수 (기본 40)] [시간 (기본 8)] [seed (기본 42)]
+ * 설정 (시스템 프로퍼티):
+ *   -Dsim.latencyMs=5                 : 채널 지연 (+ 0 ~ 같은 값의 지터)
+ *   -Dsim.idleMaxMs=5000              : 셀 작업 완료 후 다음 배차까지 최대 대기 (적재 시간)
+ *   -Dsim.qrNodes=500                 : 경로에 쓰는 QR 노드 수
+ *   -Dsim.processes=DEFAULT           : 공정 종류 (쉼표 구분, 작업 시간은 -Dcell.duration.<공정>)
+ *   -Dsim.scenario=agv_scenario.json  : 시나리오 파일 단계도 가상 시각으로 실행 (SERVER가 보내는 단계만 실제 전송)
+ *   -Dsim.start=2026-01-05T06:00:00   : 가상 시계 시작 시각 (UTC)
+ *   -Dsim.log=false                   : 장비/서버 로그 출력 (가상 시각 표시)
+ */
+public class FactorySimulation {
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final SimClock clock;
+    private final Random random;
+    private final long latencyMs;
+    private final long idleMaxMs;
+    private final int qrNodes;
+    private final String[] processes;
+    private final boolean logging;
+    private final String[] cells;
+
+    private final SimServer agvServer;
+    private final SimServer amrServer;
+
+    // 서버 -> 장비 채널 (셀은 AGV 서버에만 연결, AMR 서버는 버스처럼 같은 채널 사용)
+    private final Map<String, Link> downlinks = new HashMap<>();
+
+    // 결과 집계
+    private long packets;
+    private long trace = 1125899906842597L;
+    private int scenarioSteps;
+
+    public FactorySimulation(long seed, int cellCount, long startMs) {
+        this.clock = new SimClock(startMs);
+        this.random = new Random(seed);
+        this.latencyMs = Long.getLong("sim.latencyMs", 5L);
+        this.idleMaxMs = Long.getLong("sim.idleMaxMs", 5000L);
+        this.qrNodes = Integer.getInteger("sim.qrNodes", 500);
+        this.processes = System.getProperty("sim.processes", CellScheduler.DEFAULT_PROCESS).split(",");
+        this.logging = Boolean.getBoolean("sim.log");
+
+        this.cells = new String[cellCount];
+        for (int i = 0; i < cellCount; i++) cells[i] = String.format("CELL_%02d", i + 1);
+
+        int capacity = Integer.getInteger("device.capacity", 4096);
+        this.agvServer = new SimServer("AGV_SERVER", "AGV", "TASK_%03d", capacity, startMs);
+        this.amrServer = new SimServer("AMR_SERVER", "AMR", "TASK_AMR_%02d", capacity, startMs);
+        agvServer.peer = amrServer;
+        amrServer.peer = agvServer;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int agvs = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        int amrs = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        int cellCount = (args.length > 2) ? Integer.parseInt(args[2]) : 40;
+        double hours = (args.length > 3) ? Double.parseDouble(args[3]) : 8;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 42;
+
+        long startMs = LocalDateTime.parse(System.getProperty("sim.start", "2026-01-05T06:00:00"))
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        long durationMs = (long) (hours * 3600_000L);
+
+        System.out.printf(">> 시뮬레이션: AGV %d, AMR %d, 셀 %d, %.1f시간, seed=%d%n", agvs, amrs, cellCount, hours, seed);
+        FactorySimulation sim = new FactorySimulation(seed, cellCount, startMs);
+        sim.connectDevices(agvs, amrs);
+        String scenario = System.getProperty("sim.scenario");
+        if (scenario != null) sim.loadScenario(scenario);
+
+        long t0 = System.nanoTime();
+        sim.clock.runUntil(startMs + durationMs);
+        long wallNs = System.nanoTime() - t0;
+
+        sim.printSummary(durationMs, wallNs);
+    }
+
+    // ==========================================
+    // 1. 장비 접속 (메모리 채널 연결)
+    // ==========================================
+
+    private void connectDevices(int agvs, int amrs) {
+        // 셀 먼저 (AGV 서버에만 연결, AMR 서버는 버스로 공유)
+        for (int i = 0; i < cells.length; i++) {
+            CellClient cell = new CellClient(cells[i], clock);
+            cell.setLogging(logging);
+            Link uplink = new Link(cells[i] + ">AGV_SERVER", agvServer::onPacket);
+            downlinks.put(cells[i], new Link("AGV_SERVER>" + cells[i], json -> cell.handleMessage(json, "AGV_SERVER")));
+            clock.schedule(i * 10L, () -> cell.attach("AGV_SERVER", uplink::send));
+        }
+
+        // 로봇은 처음 몇 초 동안 무작위 순서로 접속
+        for (int i = 0; i < agvs; i++) {
+            String id = String.format("AGV_%03d", i + 1);
+            AGVClient agv = new AGVClient(id, clock);
+            agv.setLogging(logging);
+            Link uplink = new Link(id + ">AGV_SERVER", agvServer::onPacket);
+            Consumer<String> out = uplink::send;
+            downlinks.put(id, new Link("AGV_SERVER>" + id, json -> agv.handleServerMessage(json, out)));
+            clock.schedule(1000 + random.nextInt(5000), () -> agv.onConnected(out));
+        }
+        for (int i = 0; i < amrs; i++) {
+            String id = String.format("AMR_%03d", i + 1);
+            AMRClient amr = new AMRClient(id, clock);
+            amr.setLogging(logging);
+            Link uplink = new Link(id + ">AMR_SERVER", amrServer::onPacket);
+            downlinks.put(id, new Link("AMR_SERVER>" + id, amr::handleServerMessage));
+            clock.schedule(1000 + random.nextInt(5000), () -> amr.onConnected(uplink::send));
+        }
+    }
+
+    // 시나리오 단계를 가상 시각에 예약 (실행은 서버와 같은 ServerCore.onScenarioStep)
+    // 한 번에 1단계만 예약 -> 실행될 때 다음 단계를 읽음 (큰 파일도 이벤트 큐/메모리가 일정)
+    private void loadScenario(String file) throws IOException {
+        ScenarioManager.Steps steps = ScenarioManager.open(Paths.get(file));
+        System.out.println(">> 시나리오 " + file + " 단계별 예약 시작");
+        scheduleNextStep(file, steps, clock.now());
+    }
+
+    private void scheduleNextStep(String file, ScenarioManager.Steps steps, long startMs) {
+        JSONObject step;
+        try {
+            step = steps.next();
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            System.out.println(">> 시나리오 " + file + " 중단: " + e.getMessage());
+            steps.close();
+            return;
+        }
+        if (step == null) {
+            steps.close();
+            return;
+        }
+        long delay = startMs + step.getLong("time_offset_ms") - clock.now();
+        clock.schedule(Math.max(0, delay), () -> {
+            fireScenarioStep(step);
+            scheduleNextStep(file, steps, startMs);
+        });
+    }
+
+    private void fireScenarioStep(JSONObject step) {
+        scenarioSteps++;
+        String sender = step.getString("sender_id");
+        String receiver = step.getString("receiver_id");
+        SimServer server = receiver.startsWith("AMR") || sender.startsWith("AMR") ? amrServer : agvServer;
+        // SERVER가 보내는 단계만 장비로 전송 (나머지는 대시보드 표시용 기대값), COMMAND는 ACK까지 재전송
+        server.core.onScenarioStep(step);
+    }
+
+    // ==========================================
+    // 2. 결과
+    // ==========================================
+
+    private void printSummary(long durationMs, long wallNs) {
+        double wallSec = wallNs / 1e9;
+        Duration d = Duration.ofMillis(durationMs);
+        System.out.printf(">> 가상 %02d:%02d:%02d 를 실제 %.2f초에 실행 (%,.0f배속)%n",
+                d.toHours(), d.toMinutesPart(), d.toSecondsPart(), wallSec, durationMs / 1000.0 / wallSec);
+        System.out.printf(">> 이벤트 %,d개 (%,.0f/s), 채널 패킷 %,d개, 시나리오 단계 %d개%n",
+                clock.processed, clock.processed / wallSec, packets, scenarioSteps);
+        agvServer.printSummary();
+        amrServer.printSummary();
+        System.out.printf(">> trace=%016x (같은 seed/설정이면 같은 값)%n", trace);
+    }
+
+    // ==========================================
+    // 3. 가상 시계 + 이벤트 큐
+    // ==========================================
+
+    static class SimClock implements FactoryClock {
+        private final PriorityQueue<Event> queue = new PriorityQueue<>();
+        private long now;
+        private long seq;
+        private long processed;
+
+        SimClock(long startMs) {
+            this.now = startMs;
+        }
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public void schedule(long delayMs, Runnable task) {
+            at(now + Math.max(0, delayMs), task);
+        }
+
+        @Override
+        public ZoneId zone() {
+            return ZoneOffset.UTC;
+        }
+
+        void at(long timeMs, Runnable task) {
+            queue.add(new Event(Math.max(now, timeMs), seq++, task));
+        }
+
+        // endMs까지 시각 순으로 실행 (같은 시각은 예약한 순서)
+        void runUntil(long endMs) {
+            Event e;
+            while ((e = queue.peek()) != null && e.time <= endMs) {
+                queue.poll();
+                now = e.time;
+                processed++;
+                e.task.run();
+            }
+            now = endMs;
+        }
+    }
+
+    private static class Event implements Comparable<Event> {
+        private final long time;
+        private final long seq;
+        private final Runnable task;
+
+        Event(long time, long seq, Runnable task) {
+            this.time = time;
+            this.seq = seq;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            if (time != o.time) return Long.compare(time, o.time);
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    // ==========================================
+    // 4. 메모리 채널 (TCP처럼 보낸 순서 유지, 지연 = 기본값 + 지터)
+    // ==========================================
+
+    private class Link {
+        private final String name;
+        private final Consumer<String> receiver;
+        private long lastDeliveryAt;
+
+        Link(String name, Consumer<String> receiver) {
+            this.name = name;
+            this.receiver = receiver;
+        }
+
+        void send(String packet) {
+            long jitter = (latencyMs > 0) ? random.nextInt((int) latencyMs + 1) : 0;
+            long at = Math.max(clock.now() + latencyMs + jitter, lastDeliveryAt);
+            lastDeliveryAt = at;
+            clock.at(at, () -> {
+                packets++;
+                trace = (trace * 31 + name.hashCode()) * 31 + at;
+                receiver.accept(packet);
+            });
+        }
+    }
+
+    // ==========================================
+    // 5. 서버 (ServerCore + 배차)
+    // ==========================================
+
+    private class SimServer {
+        private final String serverId;
+        private final String robotPrefix;
+        private final DeviceRegistry registry;
+        private final KpiEngine kpi;
+        private final PositionStore positions;
+        private final ServerCore core;
+        // 셀 패킷을 공유받는 상대 서버 (실제 서버의 ServerBus 대신)
+        private SimServer peer;
+
+        // 배차: 접속한 로봇, 진행 중 작업 (task_id -> 보낸 시각 / 목적 셀 / 공정)
+        private final Set<String> robots = new HashSet<>();
+        private final Map<String, Long> pending = new HashMap<>();
+        private final Map<String, String[]> taskTargets = new HashMap<>();
+        private int taskSeq;
+        private long packetSeq;
+
+        // 지표
+        private long received;
+        private long completed;
+        private long[] taskMs = new long[1024];
+        private int taskCount;
+
+        SimServer(String serverId, String robotPrefix, String taskIdFormat, int capacity, long startMs) {
+            this.serverId = serverId;
+            this.robotPrefix = robotPrefix;
+            this.registry = new DeviceRegistry(capacity);
+            this.kpi = new KpiEngine(registry, capacity, Long.getLong("kpi.windowMs", 600_000L),
+                    Long.getLong("kpi.intervalMs", 2000L), Long.getLong("kpi.staleMs", 30_000L), startMs);
+            this.positions = new PositionStore(registry, capacity, Long.getLong("positions.rawRetentionMs", 3600_000L));
+
+            // 대시보드 없음, 셀은 AGV 서버에만 연결되므로 상대 서버 장비로의 전송도 같은 채널 사용
+            this.core = new ServerCore(serverId, taskIdFormat, clock, registry, positions, kpi, null, new ServerCore.Network() {
+                @Override
+                public boolean sendToDevice(String deviceId, String jsonStr) {
+                    Link link = downlinks.get(deviceId);
+                    if (link == null) return false;
+                    link.send(jsonStr);
+                    return true;
+                }
+
+                @Override
+                public void relay(String jsonStr, JSONObject root) {
+                }
+
+                @Override
+                public void publishLocal(String jsonStr, JSONObject root) {
+                }
+
+                @Override
+                public void shareCellPacket(String jsonStr) {
+                    // 같은 가상 시각에 상대 서버도 반영
+                    peer.onSharedCellPacket(jsonStr);
+                }
+            });
+            core.setLogging(logging);
+        }
+
+        // 이 서버에 접속한 장비의 패킷 (서버의 ClientHandler에서 연결 처리를 뺀 것과 같음)
+        void onPacket(String jsonStr) {
+            received++;
+            JSONObject root = new JSONObject(jsonStr);
+            JSONObject header = root.getJSONObject("header");
+            if (core.isDuplicate(header)) return;
+
+            String sender = header.getString("sender_id");
+            core.onDevicePacket(registry.register(sender), jsonStr, root);
+            dispatchTasks(sender, header.getString("type"), root.optJSONObject("body"));
+        }
+
+        // 상대 서버에 접속한 셀의 패킷 (실제 서버의 버스 구독과 같음)
+        private void onSharedCellPacket(String jsonStr) {
+            received++;
+            core.onSharedCellPacket(jsonStr);
+            JSONObject root = new JSONObject(jsonStr);
+            JSONObject header = root.getJSONObject("header");
+            dispatchTasks(header.getString("sender_id"), header.getString("type"), root.optJSONObject("body"));
+        }
+
+        // 배차
+        private void dispatchTasks(String sender, String type, JSONObject body) {
+            if (sender.startsWith(robotPrefix)) {
+                if (type.equals("STATUS") && robots.add(sender)) {
+                    assign(sender); // 첫 접속
+                } else if (type.equals("ACK") && body != null) {
+                    arrived(sender, body.optString("task_id"));
+                }
+            } else if (sender.startsWith("CELL") && body != null && "WORK_FINISHED".equals(body.optString("event"))) {
+                String robot = body.optString("robot_id");
+                // 적재 시간 뒤 다음 작업
+                if (robots.contains(robot)) clock.schedule(random.nextInt((int) idleMaxMs + 1), () -> assign(robot));
+            }
+        }
+
+        // 무작위 셀로 이동 명령 (ServerCore로 전송 -> ACK가 없으면 실제 서버처럼 재전송)
+        private void assign(String robot) {
+            String cell = cells[random.nextInt(cells.length)];
+            String process = processes[random.nextInt(processes.length)];
+            String taskId = nextTaskId();
+
+            JSONObject payload = new JSONObject();
+            String command;
+            if (robotPrefix.equals("AGV")) {
+                JSONArray waypoints = new JSONArray();
+                int hops = 3 + random.nextInt(6);
+                for (int i = 0; i < hops; i++) waypoints.put("QR_" + random.nextInt(qrNodes));
+                payload.put("final_dest", cell);
+                payload.put("waypoints", waypoints);
+                command = "MOVE_PATH";
+            } else {
+                payload.put("target_cell", cell);
+                command = "DELIVER_PART";
+            }
+            payload.put("process_type", process);
+
+            JSONObject body = new JSONObject();
+            body.put("task_id", taskId);
+            body.put("command", command);
+            body.put("payload", payload);
+
+            pending.put(taskId, clock.now());
+            taskTargets.put(taskId, new String[]{cell, process});
+            core.send("COMMAND", taskId, robot, packet("COMMAND", robot, cell + "로 이동합니다.", body));
+        }
+
+        // 도착 ACK -> 셀에 도착 알림 (셀이 작업 슬롯/대기열 처리)
+        private void arrived(String robot, String taskId) {
+            Long sentAt = pending.remove(taskId);
+            String[] target = taskTargets.remove(taskId);
+            if (sentAt == null) return; // 재전송 ACK / 시나리오 명령
+            completed++;
+            if (taskCount == taskMs.length) taskMs = Arrays.copyOf(taskMs, taskCount * 2);
+            taskMs[taskCount++] = clock.now() - sentAt;
+            if (target == null) return;
+
+            JSONObject payload = new JSONObject();
+            payload.put(robotPrefix.equals("AGV") ? "agv_id" : "amr_id", robot);
+            payload.put("process_type", target[1]);
+            JSONObject body = new JSONObject();
+            body.put("payload", payload);
+            core.send("EVENT", null, target[0], packet("EVENT", target[0], robot + " " + target[0] + " 도착", body));
+        }
+
+        private String nextTaskId() {
+            return String.format("%s_T%06d", robotPrefix, ++taskSeq);
+        }
+
+        // 배차 패킷 (packet_id도 가상 순번 -> 실행마다 같은 내용)
+        private String packet(String type, String receiver, String logText, JSONObject body) {
+            JSONObject header = new JSONObject();
+            header.put("packet_id", serverId + "-" + (++packetSeq));
+            header.put("seq", JsonPacketBuilder.nextSeq(serverId));
+            header.put("type", type);
+            header.put("sender_id", serverId);
+            header.put("receiver_id", receiver);
+            header.put("timestamp", clock.localTime().format(TIME_FMT));
+            header.put("log_text", logText);
+            return new JSONObject().put("header", header).put("body", body).toString();
+        }
+
+        void printSummary() {
+            long[] sorted = Arrays.copyOf(taskMs, taskCount);
+            Arrays.sort(sorted);
+            JSONObject snapshot = kpi.snapshot(clock.now());
+            System.out.printf(">> [%s] 수신 %,d, 순번 이상 %d, 완료 작업 %,d (명령->도착 p50=%.1fs p99=%.1fs), "
+                            + "tasks_per_hour=%s, fleet=%s, 위치 이력 %,d점%n",
+                    serverId, received, core.seqIssues(), completed,
+                    taskCount == 0 ? 0 : sorted[taskCount / 2] / 1000.0,
+                    taskCount == 0 ? 0 : sorted[(int) (taskCount * 0.99)] / 1000.0,
+                    snapshot.get("tasks_per_hour"), snapshot.get("fleet"), positions.points(0));
+            System.out.printf(">> [%s] 명령 %s%n", serverId, core.commands().summary());
+        }
+    }
+}
@@ -5,18 +5,161 @@ import org.java_websocket.drafts.Draft;
 import org.java_websocket.exceptions.InvalidDataException;
 import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ServerHandshakeBuilder;
+import org.json.JSONObject;
 
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * [대시보드 게이트웨이] AGV/AMR 서버가 공용으로 쓰는 웹소켓 방송 서버입니다.
+ * 서버들은 publish()로 큐에 넣기만 하고, 게이트웨이가 샤드별 스레드에서 접속자들에게 보냅니다.
+ *
+ * 구조:
+ *   - 디코더(수신 처리) 스레드 여러 개 (라이브러리 WebSocketWorker)
+ *   - 접속자를 샤드 N개로 나눔. 샤드마다 큐 + 송신 스레드 + DashboardStream(원문/델타 구독) 1개
+ *   - 응답 없는 연결은 ping/pong 타임아웃으로 정리
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dgateway.enabled=true                    : 서버 시작 시 게이트웨이도 시작 (기본 true, false면 서버별 단순 웹소켓으로 대체)
+ *   -Dgateway.port=9090                       : 기본은 서버 웹소켓 포트 (agv.ws.port / amr.ws.port), ServerLauncher는 9090
+ *   -Dgateway.origins=http://localhost:5173   : 허용할 브라우저 출처 (쉼표 구분, * = 모두 허용)
+ *   -Dgateway.decoders=<CPU 수>               : 수신 처리 스레드 수
+ *   -Dgateway.shards=<CPU 수>                 : 송신 샤드 수
+ *   -Dgateway.lostTimeoutSec=30               : 이 시간 동안 pong이 없으면 연결 종료 (0 = 사용 안 함)
+ *   -Dgateway.queueCapacity=10000             : 샤드별 LOCATION 대기 최대 개수 (넘치면 오래된 것부터 버림, 나머지 타입은 버리지 않음)
+ *   -Dgateway.backlog=1024                    : 접속 대기열 크기
+ *
+ * 같은 패킷(packet_id)이 여러 서버에서 들어오면 (버스로 공유된 셀 패킷 등) 한 번만 방송합니다.
+ */
 public class FactoryWebSocketServer extends WebSocketServer {
 
-    // 허용할 리액트 주소
-    private static final String ALLOWED_ORIGIN = "http://localhost:5173";
+    // 기본 허용 출처 (리액트 개발 서버)
+    private static final String DEFAULT_ORIGINS = "http://localhost:5173";
+    static final int DEFAULT_PORT = 9090;
+
+    // 같은 JVM의 서버들이 공유하는 게이트웨이 (startShared로 1회 생성)
+    private static FactoryWebSocketServer shared;
+
+    private final Set<String> allowedOrigins;
+    private final boolean allowAnyOrigin;
+    private final Shard[] shards;
+    private final Map<WebSocket, Shard> shardOf = new ConcurrentHashMap<>();
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    // 여러 서버가 같은 패킷을 publish해도 1번만 방송 (-Ddedupe.*)
+    private final PacketIdCache published = PacketIdCache.fromSystemProperties();
+
+    // 대시보드 조회 요청 처리기 (위치 이력 등, 서버별로 등록)
+    private final List<Function<String, String>> requestHandlers = new CopyOnWriteArrayList<>();
 
     public FactoryWebSocketServer(int port) {
-        super(new InetSocketAddress(port));
+        this(port, Integer.getInteger("gateway.decoders", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("gateway.shards", Runtime.getRuntime().availableProcessors()),
+                System.getProperty("gateway.origins", DEFAULT_ORIGINS));
+    }
+
+    public FactoryWebSocketServer(int port, int decoders, int shardCount, String origins) {
+        // permessage-deflate 설정은 -Dws.factory.deflate.* (WsCompression 참고)
+        super(new InetSocketAddress(port), Math.max(1, decoders), WsCompression.drafts("factory"));
+
+        this.allowedOrigins = Arrays.stream(origins.split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toSet());
+        this.allowAnyOrigin = allowedOrigins.contains("*");
+
+        int queueCapacity = Integer.getInteger("gateway.queueCapacity", 10_000);
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) shards[i] = new Shard(i, queueCapacity);
+
+        setConnectionLostTimeout(Integer.getInteger("gateway.lostTimeoutSec", 30));
+        // 대시보드 재시작 등으로 수천 명이 동시에 붙을 때 SYN 재전송 대기가 없도록
+        setMaxPendingConnections(Integer.getInteger("gateway.backlog", 1024));
+        setReuseAddr(true);
+    }
+
+    /**
+     * 공용 게이트웨이를 시작하고 돌려줍니다. (여러 서버가 불러도 1개만 생성)
+     * 포트는 gateway.port, 없으면 처음 부른 서버의 웹소켓 포트. gateway.enabled=false면 null.
+     */
+    public static synchronized FactoryWebSocketServer startShared(int defaultPort) {
+        if (!Boolean.parseBoolean(System.getProperty("gateway.enabled", "true"))) return null;
+        if (shared == null) {
+            shared = new FactoryWebSocketServer(Integer.getInteger("gateway.port", defaultPort));
+            shared.start();
+        }
+        return shared;
+    }
+
+    // ==========================================
+    // 1. 서버 -> 게이트웨이 (큐에 넣고 바로 리턴)
+    // ==========================================
+
+    /**
+     * 대시보드 메시지를 모든 샤드 큐에 넣습니다. root는 이미 파싱한 패킷 (없으면 null).
+     * 델타 구독자가 있으면 여기서 한 번만 파싱해서 샤드들이 같이 읽습니다.
+     */
+    public void publish(String jsonStr, JSONObject root) {
+        String packetId = AdmissionControl.peekField(jsonStr, "\"packet_id\"");
+        if (packetId != null && published.isDuplicate(packetId, System.currentTimeMillis())) return;
+
+        if (root == null && hasDeltaSubscribers()) {
+            try {
+                root = new JSONObject(jsonStr);
+            } catch (Exception e) {
+                // 원문 구독자에게는 그대로 보냄
+            }
+        }
+        // 샤드가 밀려도 버려도 되는 건 위치 패킷뿐 (COMMAND/ACK/STATUS/EVENT는 항상 전달)
+        JSONObject header = (root != null) ? root.optJSONObject("header") : null;
+        boolean telemetry = PriorityLanes.laneOf(header != null
+                ? header.optString("type")
+                : AdmissionControl.peekType(jsonStr)) == PriorityLanes.TELEMETRY;
+        for (Shard shard : shards) shard.offer(jsonStr, root, telemetry);
     }
 
+    public void addRequestHandler(Function<String, String> handler) {
+        requestHandlers.add(handler);
+    }
+
+    public int connections() {
+        return shardOf.size();
+    }
+
+    // 샤드별 LOCATION 대기가 넘쳐서 버린 메시지 수
+    public long dropped() {
+        long total = 0;
+        for (Shard shard : shards) total += shard.dropped.get();
+        return total;
+    }
+
+    // 송신 대기가 밀린 연결이라 건너뛴 LOCATION 수
+    public long telemetrySkipped() {
+        long total = 0;
+        for (Shard shard : shards) total += shard.stream.telemetrySkipped();
+        return total;
+    }
+
+    private boolean hasDeltaSubscribers() {
+        for (Shard shard : shards) {
+            if (shard.stream.deltaSubscribers() > 0) return true;
+        }
+        return false;
+    }
+
+    // ==========================================
+    // 2. 접속 처리
+    // ==========================================
+
     // [핵심 로직] 접속 요청(Handshake) 단계에서 출처(Origin) 검사
     @Override
     public ServerHandshakeBuilder onWebsocketHandshakeReceivedAsServer(WebSocket conn, Draft draft, ClientHandshake request) throws InvalidDataException {
@@ -29,49 +172,126 @@ public class FactoryWebSocketServer extends WebSocketServer {
             return super.onWebsocketHandshakeReceivedAsServer(conn, draft, request);
         }
 
-        // 2. Origin이 있는 경우 (웹 브라우저) -> 주소 검사
-        if (!origin.equals(ALLOWED_ORIGIN)) {
+        // 2. Origin이 있는 경우 (웹 브라우저) -> 허용 목록 검사
+        if (!allowAnyOrigin && !allowedOrigins.contains(origin)) {
             System.err.println(">> [WS 차단] 허용되지 않은 출처 접근 시도: " + origin);
-            // 3000번이 아니면 즉시 연결 거부 (예외 발생)
+            // 허용 목록에 없으면 즉시 연결 거부 (예외 발생)
             throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, "Not Allowed Origin");
         }
 
         // 3. 검사 통과
-        // System.out.println(">> [WS 허용] 인증된 출처: " + origin);
         return super.onWebsocketHandshakeReceivedAsServer(conn, draft, request);
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        // 접속 로그를 조금 더 상세하게 (React인지 Java인지 구분)
-        String origin = handshake.getFieldValue("Origin");
-        String clientType = (origin != null && !origin.isEmpty()) ? "React Frontend" : "Java Backend Client";
-
-        System.out.println(">> [WS] 접속 성공 (" + clientType + "): " + conn.getRemoteSocketAddress());
+        // 샤드 배정 (순서대로 돌아가며 -> 샤드별 접속자 수 균등)
+        Shard shard = shards[Math.floorMod(nextShard.getAndIncrement(), shards.length)];
+        shardOf.put(conn, shard);
 
-        // 환영 메시지 전송
+        // 환영 메시지를 먼저 보내고 구독 등록 (델타 구독자는 등록 직후 keyframe을 받음)
         conn.send("{\"type\":\"SYSTEM\", \"message\":\"Connected to Factory Dashboard\"}");
+        shard.stream.onOpen(conn, handshake);
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        // System.out.println(">> [WS] 접속 해제: " + conn.getRemoteSocketAddress());
+        Shard shard = shardOf.remove(conn);
+        if (shard != null) shard.stream.onClose(conn);
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
-        // 웹에서 서버로 메시지를 보낼 일이 있다면 여기서 처리
-        // System.out.println("From Web: " + message);
+        // 웹에서 온 조회 요청 -> 처음으로 응답한 처리기의 결과를 보냄
+        for (Function<String, String> handler : requestHandlers) {
+            String reply = handler.apply(message);
+            if (reply != null) {
+                conn.send(reply);
+                return;
+            }
+        }
+        // 응답한 처리기가 없음 (이력을 가진 서버가 없는 장비 등) -> 요청자가 기다리지 않도록 에러 응답
+        conn.send(unhandledReply(message));
+    }
+
+    static String unhandledReply(String message) {
+        JSONObject reply = new JSONObject();
+        try {
+            JSONObject req = new JSONObject(message);
+            reply.put("op", req.optString("op"));
+            reply.put("req", req.opt("req"));
+            if (req.has("id")) reply.put("id", req.optString("id"));
+            reply.put("error", "trail".equals(req.optString("op")) ? "unknown device" : "unsupported request");
+        } catch (Exception e) {
+            reply.put("error", "invalid request");
+        }
+        return reply.toString();
     }
 
     @Override
     public void onError(WebSocket conn, Exception ex) {
-        // 에러 로그 (너무 길면 ex.getMessage()만 출력해도 됨)
-        // ex.printStackTrace();
+        // 연결 없는 에러 = 게이트웨이 자체 실패 (포트 사용 중 등) -> 알림
+        if (conn == null) System.err.println(">> [WS] 대시보드 게이트웨이 에러: " + ex.getMessage());
     }
 
     @Override
     public void onStart() {
-        System.out.println(">> [WS] 웹소켓 방송 서버 가동 (Port: " + getPort() + ")");
+        System.out.println(">> [WS] 대시보드 게이트웨이 가동 (Port: " + getPort() + ", 샤드 " + shards.length
+                + ", 허용 출처 " + (allowAnyOrigin ? "*" : allowedOrigins) + ")");
+    }
+
+    // ==========================================
+    // 3. 샤드 = 접속자 일부 + 송신 큐 + 송신 스레드
+    // ==========================================
+
+    private class Shard {
+        private final DashboardStream stream = new DashboardStream(FactoryWebSocketServer.this);
+        // 제어/상태 메시지 (버리지 않음, 먼저 보냄)
+        private final ConcurrentLinkedQueue<Object[]> queue = new ConcurrentLinkedQueue<>();
+        // 위치 메시지 (capacity 초과 시 가장 오래된 것부터 버림)
+        private final ConcurrentLinkedQueue<Object[]> telemetry = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger telemetryPending = new AtomicInteger();
+        private final AtomicLong dropped = new AtomicLong();
+        private final int capacity;
+        private final Thread sender;
+
+        Shard(int index, int capacity) {
+            this.capacity = capacity;
+            this.sender = new Thread(this::drainLoop, "gateway-shard-" + index);
+            this.sender.setDaemon(true);
+            this.sender.start();
+        }
+
+        void offer(String jsonStr, JSONObject root, boolean isTelemetry) {
+            if (!isTelemetry) {
+                queue.offer(new Object[]{jsonStr, root});
+            } else {
+                telemetry.offer(new Object[]{jsonStr, root});
+                if (telemetryPending.incrementAndGet() > capacity && telemetry.poll() != null) {
+                    telemetryPending.decrementAndGet();
+                    dropped.incrementAndGet();
+                }
+            }
+            LockSupport.unpark(sender);
+        }
+
+        private void drainLoop() {
+            while (true) {
+                Object[] item = queue.poll();
+                if (item == null) {
+                    item = telemetry.poll();
+                    if (item == null) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    telemetryPending.decrementAndGet();
+                }
+                try {
+                    stream.publish((String) item[0], (JSONObject) item[1]);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,272 @@
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * [측정] 대시보드 게이트웨이(FactoryWebSocketServer)에 시청자 수천 명을 붙이고 방송 처리량 / 지연을 확인합니다.
+ * 실행: GatewayBench [시청자 수 (기본 2000)] [초당 메시지 (기본 50)] [측정 초 (기본 10)]
+ *       -Dgateway.decoders / -Dgateway.shards 로 스레드 수 비교, -Dbench.port=9390
+ *
+ * 시청자는 NIO 셀렉터 몇 개로 흉내 낸 원시 웹소켓 클라이언트입니다 (스레드 = 접속 수가 되지 않도록).
+ * 메시지 = LOCATION 4 : STATUS 1, 시청자 50명 중 1명이 메시지에 넣은 발행 시각으로 지연을 잽니다.
+ */
+public class GatewayBench {
+
+    private static final int SAMPLE_EVERY = 50;
+    private static final String HANDSHAKE = "GET /?stream=full HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+            + "Sec-WebSocket-Version: 13\r\n\r\n";
+
+    private static final AtomicInteger opened = new AtomicInteger();
+    private static final AtomicInteger closed = new AtomicInteger();
+    private static final AtomicLong received = new AtomicLong();
+    private static volatile long lastReceivedNs;
+
+    public static void main(String[] args) throws Exception {
+        int viewers = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int rate = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        int port = Integer.getInteger("bench.port", 9390);
+        int clientThreads = Integer.getInteger("bench.clientThreads", 2);
+
+        FactoryWebSocketServer gateway = new FactoryWebSocketServer(port);
+        gateway.start();
+        Thread.sleep(1000);
+
+        // 1. 시청자 접속
+        long c0 = System.nanoTime();
+        Viewers[] groups = new Viewers[clientThreads];
+        for (int g = 0; g < clientThreads; g++) groups[g] = new Viewers(g);
+        for (int i = 0; i < viewers; i++) groups[i % clientThreads].connect(i, port);
+        for (Viewers group : groups) group.start();
+
+        long deadline = System.currentTimeMillis() + 60_000;
+        while ((opened.get() < viewers || gateway.connections() < viewers) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        System.out.printf(">> 시청자 %,d명 접속 %.1f초 (게이트웨이 집계 %,d, 샤드/디코더는 gateway.* 설정)%n",
+                opened.get(), (System.nanoTime() - c0) / 1e9, gateway.connections());
+        Thread.sleep(500);
+        received.set(0);
+
+        // 2. 일정 속도로 발행 (서버의 relayToDashboard와 같은 경로: publish -> 샤드 큐)
+        int total = rate * seconds;
+        long gapNs = 1_000_000_000L / rate;
+        long p0 = System.nanoTime();
+        long next = p0;
+        for (int i = 0; i < total; i++) {
+            while (System.nanoTime() < next) Thread.sleep(0, 200_000);
+            next += gapNs;
+            gateway.publish(packet(i), null);
+        }
+        long p1 = System.nanoTime();
+
+        // 3. 밀린 전송이 끝날 때까지 대기
+        long last = -1;
+        while (received.get() != last) {
+            last = received.get();
+            Thread.sleep(1000);
+        }
+        long expected = (long) total * opened.get();
+        long[] latencies = merge(groups);
+        System.out.printf(">> 발행 %,d건 (%.0f건/초), 시청자 전달 %,d / %,d (%.1f%%)%n",
+                total, total / ((p1 - p0) / 1e9), received.get(), expected, 100.0 * received.get() / expected);
+        System.out.printf(">> 전달 처리량 %,.0f msgs/s (발행 시작 ~ 마지막 수신)%n", received.get() / ((lastReceivedNs - p0) / 1e9));
+        System.out.printf(">> 밀린 연결 LOCATION 생략 %,d, 큐 초과 LOCATION 버림 %,d, 끊긴 연결 %,d%n",
+                gateway.telemetrySkipped(), gateway.dropped(), closed.get());
+        if (latencies.length > 0) {
+            System.out.printf(">> 지연 (표본 %,d건) p50=%.2fms p99=%.2fms max=%.2fms%n", latencies.length,
+                    latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6,
+                    latencies[latencies.length - 1] / 1e6);
+        }
+
+        for (Viewers group : groups) group.interrupt();
+        gateway.stop(1000);
+    }
+
+    private static String packet(int i) {
+        String type = (i % 5 == 4) ? "STATUS" : "LOCATION";
+        String body = type.equals("STATUS")
+                ? "{\"mode\":\"ACTIVE\",\"is_occupied\":true}"
+                : "{\"current_node\":\"QR_" + (i % 200) + "\",\"navigation\":{\"final_dest\":\"CELL_03\",\"segment_index\":" + (i % 40) + "}}";
+        return "{\"header\":{\"msg_id\":\"B" + i + "\",\"type\":\"" + type + "\",\"sender_id\":\"AGV_" + (i % 20)
+                + "\",\"receiver_id\":\"AGV_SERVER\",\"timestamp\":\"10:00:00.000\",\"log_text\":\"bench\"},"
+                + "\"body\":" + body + ",\"bench_ns\":" + System.nanoTime() + "}";
+    }
+
+    private static long[] merge(Viewers[] groups) {
+        int n = 0;
+        for (Viewers g : groups) n += g.sampleCount;
+        long[] all = new long[n];
+        int k = 0;
+        for (Viewers g : groups) {
+            System.arraycopy(g.samples, 0, all, k, g.sampleCount);
+            k += g.sampleCount;
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    // ==========================================
+    // 시청자 묶음 = 셀렉터 1개 + 스레드 1개
+    // ==========================================
+
+    private static class Viewers extends Thread {
+        private final Selector selector;
+        private long[] samples = new long[1 << 16];
+        private volatile int sampleCount;
+
+        Viewers(int index) throws Exception {
+            super("bench-viewers-" + index);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        void connect(int id, int port) throws Exception {
+            SocketChannel ch = SocketChannel.open();
+            ch.configureBlocking(false);
+            ch.connect(new InetSocketAddress("127.0.0.1", port));
+            ch.register(selector, SelectionKey.OP_CONNECT, new Viewer(id));
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isInterrupted()) {
+                    selector.select(100);
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        try {
+                            handle(key);
+                        } catch (Exception e) {
+                            key.cancel();
+                            key.channel().close();
+                            closed.incrementAndGet();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // 측정 종료
+            }
+        }
+
+        private void handle(SelectionKey key) throws Exception {
+            SocketChannel ch = (SocketChannel) key.channel();
+            Viewer v = (Viewer) key.attachment();
+            if (key.isConnectable()) {
+                ch.finishConnect();
+                ch.write(ByteBuffer.wrap(HANDSHAKE.getBytes(StandardCharsets.US_ASCII)));
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            if (!key.isReadable()) return;
+
+            if (ch.read(v.in) < 0) throw new IllegalStateException("closed");
+            v.in.flip();
+            if (!v.open) {
+                int end = headerEnd(v.in);
+                if (end < 0) {
+                    v.in.compact();
+                    return;
+                }
+                v.in.position(end);
+                v.open = true;
+                opened.incrementAndGet();
+            }
+            readFrames(ch, v);
+            v.in.compact();
+            if (!v.in.hasRemaining()) {
+                // 큰 프레임 -> 버퍼 확장
+                ByteBuffer bigger = ByteBuffer.allocate(v.in.capacity() * 2);
+                v.in.flip();
+                bigger.put(v.in);
+                v.in = bigger;
+            }
+        }
+
+        private void readFrames(SocketChannel ch, Viewer v) throws Exception {
+            ByteBuffer in = v.in;
+            while (in.remaining() >= 2) {
+                int start = in.position();
+                int opcode = in.get(start) & 0x0F;
+                int len = in.get(start + 1) & 0x7F;
+                int header = 2;
+                if (len == 126) {
+                    if (in.remaining() < 4) return;
+                    len = in.getShort(start + 2) & 0xFFFF;
+                    header = 4;
+                } else if (len == 127) {
+                    if (in.remaining() < 10) return;
+                    len = (int) in.getLong(start + 2);
+                    header = 10;
+                }
+                if (in.remaining() < header + len) return;
+
+                byte[] payload = new byte[len];
+                in.position(start + header);
+                in.get(payload);
+
+                if (opcode == 0x1) {
+                    received.incrementAndGet();
+                    lastReceivedNs = System.nanoTime();
+                    if (v.id % SAMPLE_EVERY == 0) sample(payload);
+                } else if (opcode == 0x9) {
+                    pong(ch, payload); // 연결 유지 확인 (gateway.lostTimeoutSec)
+                } else if (opcode == 0x8) {
+                    throw new IllegalStateException("close frame");
+                }
+            }
+        }
+
+        private void sample(byte[] payload) {
+            String text = new String(payload, StandardCharsets.UTF_8);
+            int p = text.indexOf("\"bench_ns\":");
+            if (p < 0) return;
+            int s = p + 11;
+            int e = s;
+            while (e < text.length() && Character.isDigit(text.charAt(e))) e++;
+            long latency = System.nanoTime() - Long.parseLong(text.substring(s, e));
+            if (sampleCount == samples.length) samples = Arrays.copyOf(samples, samples.length * 2);
+            samples[sampleCount] = latency;
+            sampleCount++;
+        }
+
+        // 클라이언트 -> 서버 프레임은 마스킹 필수 (마스크 0이면 payload 그대로)
+        private static void pong(SocketChannel ch, byte[] payload) throws Exception {
+            ByteBuffer out = ByteBuffer.allocate(6 + payload.length);
+            out.put((byte) 0x8A).put((byte) (0x80 | payload.length)).putInt(0).put(payload).flip();
+            ch.write(out);
+        }
+
+        private static int headerEnd(ByteBuffer in) {
+            for (int i = in.position(); i + 3 < in.limit(); i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    return i + 4;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static class Viewer {
+        private final int id;
+        private ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+        private boolean open;
+
+        Viewer(int id) {
+            this.id = id;
+        }
+    }
+}
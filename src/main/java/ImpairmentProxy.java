@@ -0,0 +1,575 @@
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * [네트워크 열화 프록시] 장비와 AGVServer/AMRServer 사이에 끼워 공장 Wi-Fi 같은 나쁜 링크를 흉내 냅니다.
+ * 패킷(줄) 단위로 지연 분포, 대역폭 제한, 손실(재전송 지연), 링크 멈춤(stall), 연결 리셋을 넣고,
+ * 첫 패킷의 sender_id로 장비를 알아내 장비별 프로필 / 시간표를 적용합니다.
+ *
+ * 실행 (리눅스 한 대):
+ *   1. 서버를 다른 포트로   : ServerLauncher -Dagv.tcp.port=19001 -Damr.tcp.port=18888
+ *   2. 프록시를 원래 포트로 : ImpairmentProxy impairment.json   (9001 -> 19001, 8888 -> 18888)
+ *   3. 장비 / 측정 도구는 그대로 : AGVLauncher, AMRLauncher, FactoryLauncher, ReplayBench ... --port 9001
+ *
+ * 설정 파일 (JSON, 저장소의 impairment.json 참고):
+ *   routes   : [{"listen": 9001, "target": "127.0.0.1:19001"}, ...]
+ *   seed     : 난수 시드 (같은 시드 + 같은 장비 ID -> 같은 지연/손실 순서)
+ *   profiles : 프로필 이름 -> 프로필
+ *   default  : 장비 지정이 없을 때 쓸 프로필 이름 (장비 확인 전 패킷에도 적용)
+ *   devices  : 장비 ID (끝에 * 허용) -> 프로필 이름 (정확한 ID 우선, 와일드카드끼리는 가장 긴 패턴 우선)
+ *   timeline : [{"at_ms": 20000, "device": "AGV_01", "action": "stall | reset | profile",
+ *                "duration_ms": 3000, "profile": "far_wifi", "every_ms": 60000}]  (at_ms = 프록시 시작 기준)
+ *
+ * 프로필 (모든 키 생략 가능, 생략 = 열화 없음):
+ *   latency        : {"dist": "fixed", "ms"} | uniform(min_ms, max_ms) | normal(mean_ms, stddev_ms)
+ *                    | exponential(mean_ms) | pareto(scale_ms, shape), 공통 max_ms 상한
+ *   bandwidth_kbps : 방향별 대역폭 (0 = 무제한)
+ *   loss_pct       : 손실 확률 -> TCP 재전송처럼 rto_ms(기본 200) 늦게 도착, 뒤 패킷도 순서대로 밀림
+ *   stall_every_ms / stall_ms : 평균 간격(지수 분포)마다 양방향 링크 멈춤 (멈춘 동안 패킷은 쌓였다가 한꺼번에 도착)
+ *   reset_every_ms : 평균 간격마다 연결 강제 리셋 (RST, 양쪽 모두 끊김)
+ *
+ * 한쪽이 정상 종료(EOF)하면 그 방향의 대기 패킷을 지연대로 모두 전달한 뒤 상대에게 FIN만 보냅니다 (half-close).
+ * 양방향이 모두 끝나면 연결을 닫고, 즉시 끊는 것은 리셋(RST)과 읽기/쓰기 오류뿐입니다.
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dproxy.queue=10000    : 방향별 전달 대기 패킷 최대 수 (차면 읽기를 멈춤 -> 보내는 쪽 TCP 역압)
+ *   -Dproxy.reportSec=10   : 통계 출력 주기
+ */
+public class ImpairmentProxy {
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    // 무작위 stall/reset 판정 주기
+    private static final long CHAOS_TICK_MS = 100;
+
+    private final long seed;
+    private final Map<String, Profile> profiles = new HashMap<>();
+    private final Profile defaultProfile;
+    private final Map<String, String> deviceProfiles = new HashMap<>();
+    // 시간표로 바꾼 프로필 (나중에 넣은 것이 우선)
+    private final List<String[]> overrides = new CopyOnWriteArrayList<>();
+
+    private final Set<Conn> conns = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "proxy-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final int queueCapacity = Integer.getInteger("proxy.queue", 10_000);
+    private final long startMs = System.currentTimeMillis();
+
+    // 통계
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong packetsUp = new AtomicLong();
+    private final AtomicLong packetsDown = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong addedDelayUs = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        String file = (args.length > 0) ? args[0] : "impairment.json";
+        JSONObject config = new JSONObject(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8));
+        new ImpairmentProxy(config).start(config.getJSONArray("routes"), config.optJSONArray("timeline"));
+    }
+
+    public ImpairmentProxy(JSONObject config) {
+        this.seed = config.optLong("seed", 42);
+
+        JSONObject profileConfig = config.optJSONObject("profiles");
+        if (profileConfig != null) {
+            for (String name : profileConfig.keySet()) {
+                profiles.put(name, new Profile(name, profileConfig.getJSONObject(name)));
+            }
+        }
+        String defaultName = config.optString("default", null);
+        this.defaultProfile = (defaultName != null) ? profile(defaultName) : new Profile("none", new JSONObject());
+
+        JSONObject devices = config.optJSONObject("devices");
+        if (devices != null) {
+            for (String pattern : devices.keySet()) {
+                String name = devices.getString(pattern);
+                profile(name); // 이름 확인
+                deviceProfiles.put(pattern, name);
+            }
+        }
+    }
+
+    private Profile profile(String name) {
+        Profile p = profiles.get(name);
+        if (p == null) throw new IllegalArgumentException("프로필 없음: " + name);
+        return p;
+    }
+
+    // ==========================================
+    // 1. 시작 (경로별 접속 대기 + 시간표 + 무작위 장애 + 통계)
+    // ==========================================
+
+    public void start(JSONArray routes, JSONArray timeline) throws IOException {
+        for (int i = 0; i < routes.length(); i++) {
+            JSONObject route = routes.getJSONObject(i);
+            int listen = route.getInt("listen");
+            String target = route.getString("target");
+            int colon = target.lastIndexOf(':');
+            String host = target.substring(0, colon);
+            int port = Integer.parseInt(target.substring(colon + 1));
+
+            ServerSocket serverSocket = new ServerSocket(listen);
+            Thread t = new Thread(() -> acceptLoop(serverSocket, host, port), "proxy-accept-" + listen);
+            t.start();
+            printLog("PROXY", listen + " -> " + target + " (기본 프로필 " + defaultProfile.name + ")");
+        }
+
+        if (timeline != null) {
+            for (int i = 0; i < timeline.length(); i++) schedule(timeline.getJSONObject(i));
+        }
+        timer.scheduleAtFixedRate(this::chaosTick, CHAOS_TICK_MS, CHAOS_TICK_MS, TimeUnit.MILLISECONDS);
+
+        long reportSec = Integer.getInteger("proxy.reportSec", 10);
+        timer.scheduleAtFixedRate(this::report, reportSec, reportSec, TimeUnit.SECONDS);
+    }
+
+    private void acceptLoop(ServerSocket serverSocket, String host, int port) {
+        while (true) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                Socket server = new Socket(host, port);
+                client.setTcpNoDelay(true);
+                server.setTcpNoDelay(true);
+                Conn conn = new Conn(client, server);
+                conns.add(conn);
+                accepted.incrementAndGet();
+                conn.start();
+            } catch (IOException e) {
+                printLog("ERROR", "대상 서버 연결 실패 " + host + ":" + port + " (" + e.getMessage() + ")");
+                closeQuietly(client);
+            }
+        }
+    }
+
+    // 장비 ID -> 프로필 (시간표 변경 > devices > default)
+    private Profile resolve(String deviceId) {
+        if (deviceId == null) return defaultProfile;
+        for (int i = overrides.size() - 1; i >= 0; i--) {
+            String[] o = overrides.get(i);
+            if (matches(o[0], deviceId)) return profile(o[1]);
+        }
+        String name = deviceProfiles.get(deviceId);
+        if (name != null) return profile(name);
+        // 와일드카드가 겹치면 (AGV_* 와 *) 가장 긴 패턴 -> 설정 파일 키 순서와 관계없이 항상 같은 프로필
+        String best = null;
+        for (Map.Entry<String, String> e : deviceProfiles.entrySet()) {
+            if (matches(e.getKey(), deviceId) && (best == null || e.getKey().length() > best.length())) best = e.getKey();
+        }
+        return (best != null) ? profile(deviceProfiles.get(best)) : defaultProfile;
+    }
+
+    private static boolean matches(String pattern, String deviceId) {
+        if (pattern.equals("*")) return true;
+        if (pattern.endsWith("*")) return deviceId.startsWith(pattern.substring(0, pattern.length() - 1));
+        return pattern.equals(deviceId);
+    }
+
+    // ==========================================
+    // 2. 시간표 / 무작위 장애
+    // ==========================================
+
+    private void schedule(JSONObject entry) {
+        String device = entry.getString("device");
+        String action = entry.getString("action");
+        long at = entry.getLong("at_ms");
+        long every = entry.optLong("every_ms", 0);
+        if (action.equals("profile")) profile(entry.getString("profile")); // 이름 확인
+
+        Runnable task = () -> {
+            switch (action) {
+                case "stall":
+                    long duration = entry.getLong("duration_ms");
+                    for (Conn c : matching(device)) c.stall(duration);
+                    printLog("PROXY", "[시간표] " + device + " 링크 멈춤 " + duration + "ms");
+                    break;
+                case "reset":
+                    for (Conn c : matching(device)) c.reset();
+                    printLog("PROXY", "[시간표] " + device + " 연결 리셋");
+                    break;
+                case "profile":
+                    overrides.add(new String[]{device, entry.getString("profile")});
+                    for (Conn c : conns) {
+                        if (c.deviceId != null) c.profile = resolve(c.deviceId);
+                    }
+                    printLog("PROXY", "[시간표] " + device + " 프로필 -> " + entry.getString("profile"));
+                    break;
+                default:
+                    printLog("ERROR", "[시간표] 알 수 없는 동작: " + action);
+            }
+        };
+        if (every > 0) {
+            timer.scheduleAtFixedRate(task, at, every, TimeUnit.MILLISECONDS);
+        } else {
+            timer.schedule(task, at, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private List<Conn> matching(String device) {
+        List<Conn> result = new ArrayList<>();
+        for (Conn c : conns) {
+            if (c.deviceId != null && matches(device, c.deviceId)) result.add(c);
+        }
+        return result;
+    }
+
+    // 평균 간격 X ms인 사건 = 틱마다 확률 TICK / X (포아송 근사)
+    private void chaosTick() {
+        for (Conn c : conns) {
+            Profile p = c.profile;
+            if (p.stallEveryMs > 0 && c.chaos.nextDouble() < (double) CHAOS_TICK_MS / p.stallEveryMs) {
+                c.stall(p.stallMs);
+            }
+            if (p.resetEveryMs > 0 && c.chaos.nextDouble() < (double) CHAOS_TICK_MS / p.resetEveryMs) {
+                c.reset();
+            }
+        }
+    }
+
+    private void report() {
+        long up = packetsUp.get();
+        long down = packetsDown.get();
+        long total = up + down;
+        printLog("PROXY", String.format("접속 %d (누적 %d), 패킷 장비->서버 %,d / 서버->장비 %,d (%,dKB), 평균 추가 지연 %.1fms, 손실(재전송) %d, 멈춤 %d, 리셋 %d (경과 %ds)",
+                conns.size(), accepted.get(), up, down, bytes.get() >> 10,
+                total == 0 ? 0.0 : addedDelayUs.get() / 1000.0 / total, lost.get(), stalls.get(), resets.get(),
+                (System.currentTimeMillis() - startMs) / 1000));
+    }
+
+    // ==========================================
+    // 3. 프로필 (지연 분포 + 대역폭 + 손실 + 무작위 장애)
+    // ==========================================
+
+    static class Profile {
+        final String name;
+        final String dist;
+        final double a;
+        final double b;
+        final double maxMs;
+        final long bandwidthKbps;
+        final double lossPct;
+        final long rtoMs;
+        final long stallEveryMs;
+        final long stallMs;
+        final long resetEveryMs;
+
+        Profile(String name, JSONObject json) {
+            this.name = name;
+            JSONObject latency = json.optJSONObject("latency");
+            if (latency == null) latency = new JSONObject().put("dist", "fixed").put("ms", 0);
+            this.dist = latency.optString("dist", "fixed");
+            switch (dist) {
+                case "fixed":
+                    a = latency.optDouble("ms", 0);
+                    b = 0;
+                    break;
+                case "uniform":
+                    a = latency.getDouble("min_ms");
+                    b = latency.getDouble("max_ms");
+                    break;
+                case "normal":
+                    a = latency.getDouble("mean_ms");
+                    b = latency.getDouble("stddev_ms");
+                    break;
+                case "exponential":
+                    a = latency.getDouble("mean_ms");
+                    b = 0;
+                    break;
+                case "pareto":
+                    a = latency.getDouble("scale_ms");
+                    b = latency.getDouble("shape");
+                    break;
+                default:
+                    throw new IllegalArgumentException(name + ": 알 수 없는 지연 분포 " + dist);
+            }
+            this.maxMs = latency.optDouble("max_ms", 60_000);
+            this.bandwidthKbps = json.optLong("bandwidth_kbps", 0);
+            this.lossPct = json.optDouble("loss_pct", 0);
+            this.rtoMs = json.optLong("rto_ms", 200);
+            this.stallEveryMs = json.optLong("stall_every_ms", 0);
+            this.stallMs = json.optLong("stall_ms", 1000);
+            this.resetEveryMs = json.optLong("reset_every_ms", 0);
+        }
+
+        // 패킷 1개 지연 (ms, 0 이상 max_ms 이하)
+        double sampleMs(Random random) {
+            double ms;
+            switch (dist) {
+                case "uniform":
+                    ms = a + (b - a) * random.nextDouble();
+                    break;
+                case "normal":
+                    ms = a + b * random.nextGaussian();
+                    break;
+                case "exponential":
+                    ms = -a * Math.log(1 - random.nextDouble());
+                    break;
+                case "pareto":
+                    ms = a / Math.pow(1 - random.nextDouble(), 1 / b);
+                    break;
+                default:
+                    ms = a;
+            }
+            return Math.max(0, Math.min(ms, maxMs));
+        }
+
+        // 대역폭 제한 시 전송 시간 (ns)
+        long transmitNs(int length) {
+            return bandwidthKbps <= 0 ? 0 : length * 8_000_000L / bandwidthKbps;
+        }
+    }
+
+    // ==========================================
+    // 4. 연결 1개 (장비 <-> 서버, 방향별 Pipe)
+    // ==========================================
+
+    private class Conn {
+        private final Socket client;
+        private final Socket server;
+        private final Pipe up;
+        private final Pipe down;
+        // EOF까지 전달을 마친 방향 수 (2 = 양방향 종료 -> 닫기)
+        private final AtomicLong finished = new AtomicLong();
+
+        volatile String deviceId;
+        volatile Profile profile = defaultProfile;
+        volatile long stalledUntilNs;
+        volatile Random chaos = new Random(seed);
+        private volatile boolean closed;
+
+        Conn(Socket client, Socket server) throws IOException {
+            this.client = client;
+            this.server = server;
+            this.up = new Pipe(this, "up", client, server, packetsUp);
+            this.down = new Pipe(this, "down", server, client, packetsDown);
+        }
+
+        void start() {
+            up.start();
+            down.start();
+        }
+
+        // 첫 패킷의 sender_id -> 장비별 프로필 + 장비별 난수 (같은 시드면 같은 순서)
+        void identify(String id) {
+            if (id == null) return;
+            long deviceSeed = seed * 31 + id.hashCode();
+            up.random = new Random(deviceSeed * 2);
+            down.random = new Random(deviceSeed * 2 + 1);
+            chaos = new Random(deviceSeed * 2 + 2);
+            profile = resolve(id);
+            deviceId = id;
+            printLog("PROXY", id + " 연결 (" + client.getInetAddress() + ", 프로필 " + profile.name + ")");
+        }
+
+        void stall(long durationMs) {
+            stalledUntilNs = Math.max(stalledUntilNs, System.nanoTime() + durationMs * 1_000_000);
+            stalls.incrementAndGet();
+        }
+
+        // RST로 양쪽 연결 끊기 (장비는 연결 리셋, 서버는 접속 해제로 봄)
+        void reset() {
+            if (closed) return;
+            resets.incrementAndGet();
+            try {
+                client.setSoLinger(true, 0);
+                server.setSoLinger(true, 0);
+            } catch (IOException e) {
+                // 이미 닫힘
+            }
+            close();
+        }
+
+        // 한 방향이 EOF를 전달하고 FIN까지 보냄 -> 반대 방향도 끝났으면 닫기
+        void finish() {
+            if (finished.incrementAndGet() == 2) close();
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            conns.remove(this);
+            closeQuietly(client);
+            closeQuietly(server);
+            up.writer.interrupt();
+            down.writer.interrupt();
+            if (deviceId != null) printLog("PROXY", deviceId + " 연결 종료");
+        }
+    }
+
+    // 한 방향: 읽기 스레드(줄 단위 + 전달 시각 계산) -> 대기 큐 -> 쓰기 스레드(시각이 되면 전달)
+    private class Pipe {
+        private final Conn conn;
+        private final String direction;
+        private final Socket target;
+        private final InputStream in;
+        private final OutputStream out;
+        private final AtomicLong counter;
+        private final BlockingQueue<Packet> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread reader;
+        private final Thread writer;
+
+        volatile Random random = new Random(seed);
+        private long linkFreeAtNs;
+        private long lastDeliverNs;
+
+        Pipe(Conn conn, String direction, Socket source, Socket target, AtomicLong counter) throws IOException {
+            this.conn = conn;
+            this.direction = direction;
+            this.target = target;
+            this.in = new BufferedInputStream(source.getInputStream());
+            this.out = new BufferedOutputStream(target.getOutputStream());
+            this.counter = counter;
+            this.reader = new Thread(this::readLoop, "proxy-" + direction + "-read");
+            this.writer = new Thread(this::writeLoop, "proxy-" + direction + "-write");
+            this.reader.setDaemon(true);
+            this.writer.setDaemon(true);
+        }
+
+        void start() {
+            reader.start();
+            writer.start();
+        }
+
+        private void readLoop() {
+            byte[] buf = new byte[8192];
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            try {
+                int n;
+                while ((n = in.read(buf)) >= 0) {
+                    // 읽은 덩어리에서 줄 단위로 잘라 패킷 1개씩 전달 시각 계산
+                    int from = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (buf[i] != '\n') continue;
+                        line.write(buf, from, i + 1 - from);
+                        from = i + 1;
+                        onLine(line.toByteArray());
+                        line.reset();
+                    }
+                    line.write(buf, from, n - from);
+                }
+                // EOF: 줄바꿈 없이 남은 조각까지 넘기고, 쓰기 스레드가 대기 패킷을 다 보낸 뒤 half-close
+                if (line.size() > 0) onLine(line.toByteArray());
+                queue.put(new Packet(null, lastDeliverNs));
+            } catch (IOException | InterruptedException e) {
+                // 끊김 / 리셋
+                conn.close();
+            }
+        }
+
+        private void onLine(byte[] data) throws InterruptedException {
+            if (conn.deviceId == null && direction.equals("up")) {
+                conn.identify(AdmissionControl.peekField(new String(data, StandardCharsets.UTF_8), "\"sender_id\""));
+            }
+            queue.put(new Packet(data, deliverAt(data.length)));
+        }
+
+        // 대역폭(직렬화) -> 지연 분포 + 손실 재전송 -> TCP 순서 유지
+        private long deliverAt(int length) {
+            Profile p = conn.profile;
+            long now = System.nanoTime();
+            long txStart = Math.max(now, linkFreeAtNs);
+            linkFreeAtNs = txStart + p.transmitNs(length);
+
+            double delayMs = p.sampleMs(random);
+            if (p.lossPct > 0 && random.nextDouble() * 100 < p.lossPct) {
+                delayMs += p.rtoMs;
+                lost.incrementAndGet();
+            }
+            long at = Math.max(linkFreeAtNs + (long) (delayMs * 1_000_000), lastDeliverNs);
+            lastDeliverNs = at;
+            addedDelayUs.addAndGet((at - now) / 1000);
+            return at;
+        }
+
+        private void writeLoop() {
+            try {
+                while (true) {
+                    Packet packet = queue.take();
+                    if (packet.data == null) {
+                        // 읽기 쪽 EOF -> 보낼 것은 다 보냈으므로 상대에게 FIN
+                        out.flush();
+                        target.shutdownOutput();
+                        conn.finish();
+                        return;
+                    }
+                    // 전달 시각 + 링크 멈춤이 끝날 때까지 대기 (멈춤은 기다리는 중에 늘어날 수 있음)
+                    long wait;
+                    while ((wait = Math.max(packet.deliverAtNs, conn.stalledUntilNs) - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                        if (Thread.interrupted()) return;
+                    }
+                    out.write(packet.data);
+                    counter.incrementAndGet();
+                    bytes.addAndGet(packet.data.length);
+                    if (queue.isEmpty()) out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // 끊김 / 리셋
+                conn.close();
+            }
+        }
+    }
+
+    // data == null: 읽기 쪽 EOF 표시
+    private static class Packet {
+        final byte[] data;
+        final long deliverAtNs;
+
+        Packet(byte[] data, long deliverAtNs) {
+            this.data = data;
+            this.deliverAtNs = deliverAtNs;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static void printLog(String tag, String msg) {
+        System.out.printf("[%s] [%-8s] %s%n", LocalTime.now().format(TIME_FMT), tag, msg);
+    }
+}
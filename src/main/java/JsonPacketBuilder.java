@@ -1,7 +1,10 @@
 import org.json.JSONObject;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class JsonPacketBuilder {
 
@@ -12,10 +15,29 @@ public class JsonPacketBuilder {
     // 서버와 호환되는 시간 포맷 (ISO 8601)
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 
+    // 송신자별 순번 (1부터 단조 증가, 서버가 누락/순서 역전 감지에 사용)
+    private static final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    public static long nextSeq(String sender) {
+        return sequences.computeIfAbsent(sender, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    // 마지막으로 발급한 순번 (아직 없으면 0)
+    public static long lastSeq(String sender) {
+        AtomicLong seq = sequences.get(sender);
+        return seq == null ? 0 : seq.get();
+    }
+
     // 공통 헤더 생성 (log_text 포함)
     private static JSONObject createHeader(String type, String sender, String receiver, String logText) {
+        return createHeader(type, sender, receiver, logText, nextSeq(sender));
+    }
+
+    // seq <= 0이면 순번 없는 헤더 (세션 패킷: 순번을 쓰면 재개 판단 기준이 바뀜)
+    private static JSONObject createHeader(String type, String sender, String receiver, String logText, long seq) {
         JSONObject header = new JSONObject();
         header.put("packet_id", UUID.randomUUID().toString());
+        if (seq > 0) header.put("seq", seq);
         header.put("type", type);
         header.put("sender_id", sender);
         header.put("receiver_id", receiver);
@@ -97,6 +119,17 @@ public class JsonPacketBuilder {
      * [메인 메서드] AGV & AMR 공용
      */
     public static String createAckPacket(String sender, String deviceType, String taskId, String message) {
+        return ack(sender, deviceType, taskId, message, false).toString();
+    }
+
+    /**
+     * 이동을 마친 도착 ACK (body.arrived=true -> KPI가 작업 1건으로 셈, 명령 수신 ACK와 구분)
+     */
+    public static String createArrivalAckPacket(String sender, String deviceType, String taskId, String message) {
+        return ack(sender, deviceType, taskId, message, true).toString();
+    }
+
+    private static JSONObject ack(String sender, String deviceType, String taskId, String message, boolean arrived) {
         // 장비 타입에 따라 수신 서버 결정
         String receiverId = "AMR".equalsIgnoreCase(deviceType) ? AMR_SERVER_ID : AGV_SERVER_ID;
 
@@ -107,8 +140,9 @@ public class JsonPacketBuilder {
         body.put("task_id", taskId);
         body.put("status", "COMPLETED");
         body.put("command", message); // 서버가 command 필드를 확인함
+        if (arrived) body.put("arrived", true);
         root.put("body", body);
-        return root.toString();
+        return root;
     }
 
     /**
@@ -118,4 +152,56 @@ public class JsonPacketBuilder {
     public static String createAckPacket(String sender, String taskId, String message) {
         return createAckPacket(sender, "AGV", taskId, message);
     }
+
+    // ==========================================
+    // 4. 세션 패킷 (재접속 시 세션 재개, SessionLink)
+    // ==========================================
+
+    /**
+     * 장비 -> 서버: 재접속 직후 첫 패킷. 서버가 발급한 세션 토큰 + 장비가 마지막으로 보낸 순번
+     */
+    public static String createResumePacket(String sender, String sessionToken, long lastSeq) {
+        JSONObject root = new JSONObject();
+        root.put("header", createHeader("RESUME", sender, "SERVER", "[세션] " + sender + " 재접속 (seq " + lastSeq + ")", 0));
+
+        JSONObject body = new JSONObject();
+        body.put("session_token", sessionToken);
+        body.put("last_seq", lastSeq);
+        root.put("body", body);
+        return root.toString();
+    }
+
+    /**
+     * 서버 -> 장비: 로그인 시 세션 발급 / RESUME 응답.
+     * resumed=true면 last_seq = 서버가 마지막으로 받은 장비 순번 (그 뒤 패킷은 장비가 다시 보냄)
+     * resumed=false + 빈 토큰 = 세션 재개 거절 (장비는 처음 로그인부터 다시)
+     */
+    public static String createSessionPacket(String serverId, String deviceId, String sessionToken, boolean resumed, long lastSeq) {
+        JSONObject root = new JSONObject();
+        root.put("header", createHeader("SESSION", serverId, deviceId,
+                "[세션] " + deviceId + (resumed ? " 세션 재개" : sessionToken.isEmpty() ? " 세션 재개 거절" : " 세션 발급"), 0));
+
+        JSONObject body = new JSONObject();
+        body.put("session_token", sessionToken);
+        body.put("resumed", resumed);
+        body.put("last_seq", lastSeq);
+        root.put("body", body);
+        return root.toString();
+    }
+
+    /**
+     * 하트비트 (순번 없음): 장비 -> 서버 PING, 서버 -> 장비 PONG.
+     * 조용한 연결이 살아 있는지 확인 (응답이 없으면 양쪽 모두 연결을 닫고 장비는 재접속)
+     */
+    public static String createPingPacket(String sender) {
+        JSONObject root = new JSONObject();
+        root.put("header", createHeader("PING", sender, "SERVER", "", 0));
+        return root.toString();
+    }
+
+    public static String createPongPacket(String serverId, String deviceId) {
+        JSONObject root = new JSONObject();
+        root.put("header", createHeader("PONG", serverId, deviceId, "", 0));
+        return root.toString();
+    }
 }
\ No newline at end of file
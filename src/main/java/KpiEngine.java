@@ -0,0 +1,302 @@
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * [KPI 집계] 패킷이 지나갈 때마다 최근 구간(슬라이딩 윈도우) 집계를 갱신하고,
+ * 일정 주기로 대시보드에 KPI를 보냅니다. 이력을 다시 훑지 않고, 장비당 메모리는 고정입니다.
+ *
+ * KPI (기본 최근 10분):
+ *   - 셀 가동률       : CELL STATUS의 순간 가동률(busy_slots / total_slots)을 시간 가중 평균
+ *                      (셀이 보내는 utilization은 가동 이후 누적 평균이라 윈도우 집계에 쓰지 않음)
+ *   - 로봇 유휴율(%)  : 작업 중(LOCATION 이동 ~ 도착 ACK) 이 아닌 시간 비율
+ *   - 경로별 이동 시간 : 출발지(직전 도착 셀) -> 목적지(final_dest), 첫 LOCATION ~ 도착 ACK
+ *   - 시간당 작업 수   : 도착 ACK(body.arrived=true) 개수를 1시간 기준으로 환산 (명령 수신 ACK / 시나리오 ACK는 제외)
+ *
+ * 대시보드 메시지:
+ *   {"op":"kpi","server":"AGV_SERVER","ts":..,"window_ms":600000,"tasks_per_hour":..,
+ *    "fleet":{"cell_utilization":..,"robot_idle_pct":..},
+ *    "cells":{"CELL_01":{"utilization":0.42}},"robots":{"AGV_01":{"idle_pct":35.2}},
+ *    "routes":{"CELL_01->CELL_03":{"avg_travel_ms":8200,"trips":4}}}
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dkpi.enabled=true
+ *   -Dkpi.windowMs=600000    : 집계 구간
+ *   -Dkpi.intervalMs=2000    : 대시보드 전송 주기
+ *   -Dkpi.staleMs=30000      : 이 시간 동안 패킷이 없는 장비는 시간 집계에서 제외
+ */
+public class KpiEngine {
+
+    private static final int BUCKETS = 60;
+    private static final String ORIGIN_UNKNOWN = "START";
+
+    private final DeviceRegistry registry;
+    private final long windowMs;
+    private final long intervalMs;
+    private final long staleMs;
+    private final long startMs;
+
+    // 슬롯별 집계 (패킷을 보낸 장비만 생성)
+    private final AtomicReferenceArray<DeviceKpi> devices;
+    // 경로별 이동 시간 (경로 수만큼만 생김)
+    private final Map<String, Window> routes = new ConcurrentHashMap<>();
+    // 완료 작업 수
+    private final Window tasks;
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "kpi-ticker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public KpiEngine(DeviceRegistry registry, int capacity, long windowMs, long intervalMs, long staleMs) {
+        this(registry, capacity, windowMs, intervalMs, staleMs, System.currentTimeMillis());
+    }
+
+    // startMs: 집계 시작 시각 (시뮬레이션은 가상 시계 기준)
+    public KpiEngine(DeviceRegistry registry, int capacity, long windowMs, long intervalMs, long staleMs, long startMs) {
+        this.registry = registry;
+        this.startMs = startMs;
+        this.devices = new AtomicReferenceArray<>(capacity);
+        this.windowMs = windowMs;
+        this.intervalMs = intervalMs;
+        this.staleMs = staleMs;
+        this.tasks = new Window(windowMs);
+    }
+
+    // 설정 없으면 기본값, kpi.enabled=false면 null
+    public static KpiEngine fromSystemProperties(DeviceRegistry registry) {
+        if (!Boolean.parseBoolean(System.getProperty("kpi.enabled", "true"))) return null;
+        return new KpiEngine(registry, Integer.getInteger("device.capacity", 1024),
+                Long.getLong("kpi.windowMs", 600_000L),
+                Long.getLong("kpi.intervalMs", 2000L),
+                Long.getLong("kpi.staleMs", 30_000L));
+    }
+
+    // 주기적으로 KPI를 만들어 publisher로 넘김 (대시보드 방송, 공용 게이트웨이에서 구분하도록 server 필드 추가)
+    public void start(String source, Consumer<String> publisher) {
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                publisher.accept(snapshot(System.currentTimeMillis()).put("server", source).toString());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // ==========================================
+    // 1. 패킷 반영 (updateDeviceState에서 호출)
+    // ==========================================
+
+    public void observe(int slot, String type, JSONObject body, long nowMs) {
+        DeviceKpi d = devices.get(slot);
+        if (d == null) {
+            devices.compareAndSet(slot, null, new DeviceKpi(registry.idOf(slot).startsWith("CELL"), nowMs));
+            d = devices.get(slot);
+        }
+
+        boolean arrived = false;
+        String finishedRoute = null;
+        long travelMs = 0;
+
+        synchronized (d) {
+            d.accrue(nowMs);
+            // 조용했던 구간(staleMs 이후)은 건너뛰고 지금부터 다시 누적
+            d.accruedUntil = nowMs;
+            d.lastMs = nowMs;
+
+            if (d.cell) {
+                if (type.equals("STATUS") && body != null) {
+                    // 다음 STATUS까지 이 비율로 누적
+                    int slots = body.optInt("total_slots", 0);
+                    if (slots > 0) d.busyRatio = Math.min(1.0, body.optInt("busy_slots", 0) / (double) slots);
+                }
+            } else if (type.equals("LOCATION")) {
+                // 작업 중 + 이번 이동의 출발 시각/목적지 기록
+                JSONObject navi = (body != null) ? body.optJSONObject("navigation") : null;
+                if (!d.busy) {
+                    d.busy = true;
+                    d.tripStartMs = nowMs;
+                }
+                if (navi != null) d.dest = navi.optString("final_dest", d.dest);
+            } else if (type.equals("STATUS") && body != null) {
+                if ("INACTIVE".equals(body.optString("mode"))) d.busy = false;
+                else if (body.optBoolean("is_occupied")) d.busy = true;
+            } else if (type.equals("ACK") && body != null && body.optBoolean("arrived")) {
+                arrived = true;
+                if (d.tripStartMs > 0 && d.dest != null) {
+                    finishedRoute = d.origin + "->" + d.dest;
+                    travelMs = nowMs - d.tripStartMs;
+                    d.origin = d.dest;
+                }
+                d.busy = false;
+                d.tripStartMs = 0;
+                d.dest = null;
+            }
+        }
+
+        // 도착 ACK만 작업 1건 (LOCATION 없이 도착만 알리는 AMR도 셈, 경로 시간은 이동 기록이 있을 때만)
+        if (arrived) tasks.add(nowMs, 1, 1);
+        if (finishedRoute != null) routes.computeIfAbsent(finishedRoute, k -> new Window(windowMs)).add(nowMs, travelMs, 1);
+    }
+
+    // ==========================================
+    // 2. KPI 스냅샷 (주기 실행, 장비 수 x 버킷 수만큼만 계산)
+    // ==========================================
+
+    public JSONObject snapshot(long nowMs) {
+        JSONObject cells = new JSONObject();
+        JSONObject robots = new JSONObject();
+        double utilSum = 0;
+        int cellCount = 0;
+        double idleSum = 0;
+        double observedSum = 0;
+
+        for (int slot = 0; slot < devices.length(); slot++) {
+            DeviceKpi d = devices.get(slot);
+            if (d == null) continue;
+
+            double busy;
+            double observed;
+            synchronized (d) {
+                d.accrue(nowMs);
+                busy = d.busyTime.sum(nowMs);
+                observed = d.observedTime.sum(nowMs);
+            }
+            if (observed <= 0) continue;
+
+            String id = registry.idOf(slot);
+            if (d.cell) {
+                double util = busy / observed; // 셀은 busyTime에 사용 중 슬롯 비율 x 시간을 쌓음
+                cells.put(id, new JSONObject().put("utilization", round(util, 3)));
+                utilSum += util;
+                cellCount++;
+            } else {
+                double idlePct = 100.0 * (observed - busy) / observed;
+                robots.put(id, new JSONObject().put("idle_pct", round(idlePct, 1)));
+                idleSum += observed - busy;
+                observedSum += observed;
+            }
+        }
+
+        JSONObject routeKpi = new JSONObject();
+        for (Map.Entry<String, Window> e : routes.entrySet()) {
+            long trips = e.getValue().count(nowMs);
+            if (trips == 0) continue;
+            routeKpi.put(e.getKey(), new JSONObject()
+                    .put("avg_travel_ms", Math.round(e.getValue().sum(nowMs) / trips))
+                    .put("trips", trips));
+        }
+
+        // 서버 시작 직후에는 실제 경과 시간 기준으로 환산
+        long span = Math.max(1, Math.min(windowMs, nowMs - startMs));
+
+        JSONObject fleet = new JSONObject();
+        fleet.put("cell_utilization", cellCount == 0 ? JSONObject.NULL : round(utilSum / cellCount, 3));
+        fleet.put("robot_idle_pct", observedSum == 0 ? JSONObject.NULL : round(100.0 * idleSum / observedSum, 1));
+
+        JSONObject kpi = new JSONObject();
+        kpi.put("op", "kpi");
+        kpi.put("ts", nowMs);
+        kpi.put("window_ms", windowMs);
+        kpi.put("tasks_per_hour", round(tasks.count(nowMs) * 3_600_000.0 / span, 1));
+        kpi.put("fleet", fleet);
+        kpi.put("cells", cells);
+        kpi.put("robots", robots);
+        kpi.put("routes", routeKpi);
+        return kpi;
+    }
+
+    private static double round(double v, int digits) {
+        double scale = Math.pow(10, digits);
+        return Math.round(v * scale) / scale;
+    }
+
+    // ==========================================
+    // 3. 장비별 상태 + 시간 누적
+    // ==========================================
+
+    private class DeviceKpi {
+        private final boolean cell;
+        // 시간 누적 (윈도우 안에서 관찰된 시간 / 작업 중인 시간, 셀은 사용 중 슬롯 비율 x 시간)
+        private final Window observedTime = new Window(windowMs);
+        private final Window busyTime = new Window(windowMs);
+
+        private long accruedUntil;
+        private long lastMs;
+        private boolean busy;
+        private double busyRatio;
+
+        // 로봇 이동 (경로별 이동 시간용)
+        private String origin = ORIGIN_UNKNOWN;
+        private String dest;
+        private long tripStartMs;
+
+        DeviceKpi(boolean cell, long nowMs) {
+            this.cell = cell;
+            this.accruedUntil = nowMs;
+            this.lastMs = nowMs;
+        }
+
+        // 마지막 누적 시점부터 지금까지를 현재 상태로 누적 (오래 조용한 장비는 staleMs까지만)
+        void accrue(long nowMs) {
+            long until = Math.min(nowMs, lastMs + staleMs);
+            long dt = until - accruedUntil;
+            if (dt > 0) {
+                observedTime.add(until, dt, 0);
+                double weight = cell ? busyRatio : (busy ? 1 : 0);
+                if (weight > 0) busyTime.add(until, dt * weight, 0);
+            }
+            accruedUntil = Math.max(accruedUntil, until);
+        }
+    }
+
+    // ==========================================
+    // 4. 슬라이딩 윈도우 (고정 크기 버킷 링)
+    // ==========================================
+
+    static class Window {
+        private final long bucketMs;
+        private final double[] sums = new double[BUCKETS];
+        private final long[] counts = new long[BUCKETS];
+        private final long[] epochs = new long[BUCKETS];
+
+        Window(long windowMs) {
+            this.bucketMs = Math.max(1, windowMs / BUCKETS);
+            Arrays.fill(epochs, -1);
+        }
+
+        synchronized void add(long nowMs, double value, long count) {
+            long epoch = nowMs / bucketMs;
+            int i = (int) (epoch % BUCKETS);
+            if (epochs[i] != epoch) {
+                epochs[i] = epoch;
+                sums[i] = 0;
+                counts[i] = 0;
+            }
+            sums[i] += value;
+            counts[i] += count;
+        }
+
+        synchronized double sum(long nowMs) {
+            long oldest = nowMs / bucketMs - BUCKETS;
+            double s = 0;
+            for (int i = 0; i < BUCKETS; i++) if (epochs[i] > oldest) s += sums[i];
+            return s;
+        }
+
+        synchronized long count(long nowMs) {
+            long oldest = nowMs / bucketMs - BUCKETS;
+            long c = 0;
+            for (int i = 0; i < BUCKETS; i++) if (epochs[i] > oldest) c += counts[i];
+            return c;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * [전송 계층 - 메모리] 같은 JVM의 서버와 장비를 소켓 없이 연결합니다.
+ * 연결 1개 = 방향별 크기 제한 큐 2개. 패킷 문자열 참조를 그대로 넘기므로
+ * 바이트 인코딩/디코딩, 줄 나누기, 시스템 콜이 없습니다. (큐가 차면 보내는 쪽이 기다림 = TCP 버퍼와 같은 역압)
+ * JSON 자체는 그대로 문자열로 오가므로 보내는 쪽 직렬화 / 받는 쪽 파싱 비용은 tcp와 같습니다.
+ * 단, asyncSender는 기다리지 않고 버리고 버린 수를 셉니다. (OutboundLink가 큐가 찼을 때와 같음, dropped())
+ *
+ * 포트 번호는 같은 JVM 안의 이름으로만 쓰입니다. (listen하지 않은 포트로 connect하면 ConnectException)
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dtransport.memory.capacity=4096 : 방향별 대기 패킷 최대 개수
+ */
+public class MemoryTransport implements Transport {
+
+    public static final MemoryTransport INSTANCE = new MemoryTransport();
+
+    // 닫힘 확인 주기 (큐가 비었거나 찼을 때만)
+    private static final long POLL_MS = 100;
+
+    private final Map<Integer, MemoryListener> listeners = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionSeq = new AtomicInteger();
+    private final int capacity = Integer.getInteger("transport.memory.capacity", 4096);
+    // asyncSender가 큐가 차서 버린 패킷 수 (모든 연결 합계)
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Override
+    public Connection connect(String host, int port) throws IOException {
+        MemoryListener listener = listeners.get(port);
+        if (listener == null) throw new ConnectException("Connection refused (memory:" + port + ")");
+
+        Pipe up = new Pipe(capacity);
+        Pipe down = new Pipe(capacity);
+        String label = "memory#" + connectionSeq.incrementAndGet();
+        listener.pending.add(new MemoryConnection(up, down, label, dropped));
+        return new MemoryConnection(down, up, "memory:" + port, dropped);
+    }
+
+    @Override
+    public Listener listen(int port) throws IOException {
+        MemoryListener listener = new MemoryListener(port);
+        if (listeners.putIfAbsent(port, listener) != null) {
+            throw new SocketException("Address already in use (memory:" + port + ")");
+        }
+        return listener;
+    }
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    private class MemoryListener implements Listener {
+        private final int port;
+        private final BlockingQueue<MemoryConnection> pending = new LinkedBlockingQueue<>();
+        private volatile boolean closed;
+
+        MemoryListener(int port) {
+            this.port = port;
+        }
+
+        @Override
+        public Connection accept() throws IOException {
+            try {
+                while (!closed) {
+                    MemoryConnection conn = pending.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    if (conn != null) return conn;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new SocketException("Listener closed (memory:" + port + ")");
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            listeners.remove(port, this);
+        }
+    }
+
+    // 한 방향 큐 (어느 쪽이든 닫으면 닫힘)
+    private static class Pipe {
+        private final BlockingQueue<String> queue;
+        private volatile boolean closed;
+
+        Pipe(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private static class MemoryConnection implements Connection {
+        private final Pipe in;
+        private final Pipe out;
+        private final String label;
+        private final AtomicLong dropped;
+
+        MemoryConnection(Pipe in, Pipe out, String label, AtomicLong dropped) {
+            this.in = in;
+            this.out = out;
+            this.label = label;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            try {
+                while (true) {
+                    String line = in.queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    if (line != null) return line;
+                    // 상대가 닫았어도 남은 패킷은 다 읽은 뒤 끝
+                    if (in.closed && in.queue.isEmpty()) return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+        }
+
+        @Override
+        public void send(String line) {
+            try {
+                while (!out.closed) {
+                    if (out.queue.offer(line, POLL_MS, TimeUnit.MILLISECONDS)) return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // 타이머 스레드(FactoryClock 등)에서 불러도 막히지 않도록 기다리지 않고 넣기만 함
+        @Override
+        public Consumer<String> asyncSender(String name) {
+            return line -> {
+                if (!out.closed && !out.queue.offer(line)) dropped.incrementAndGet();
+            };
+        }
+
+        @Override
+        public void close() {
+            out.closed = true;
+            in.closed = true;
+        }
+
+        @Override
+        public String remote() {
+            return label;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * [송신 링크] 서버 연결 하나당 lock-free 큐 1개와 전용 송신 스레드 1개를 둡니다.
+ * 호출하는 쪽은 큐에 넣기만 하고 바로 리턴하므로, 느린 서버 소켓 때문에 막히지 않습니다.
+ * 큐가 비면 모아둔 내용을 한 번에 flush 합니다.
+ */
+public class OutboundLink {
+
+    private static final int DEFAULT_MAX_PENDING = 10_000;
+
+    private final String name;
+    private final Writer out;
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int maxPending;
+    private final Thread sender;
+
+    private volatile boolean closed = false;
+
+    public OutboundLink(String name, OutputStream os) {
+        this(name, os, DEFAULT_MAX_PENDING);
+    }
+
+    public OutboundLink(String name, OutputStream os, int maxPending) {
+        this.name = name;
+        this.out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        this.maxPending = maxPending;
+        this.sender = new Thread(this::drainLoop, "out-" + name);
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * 한 줄을 송신 큐에 넣습니다. (절대 막히지 않음)
+     * @return 닫혔거나 큐가 가득 차서 버렸으면 false
+     */
+    public boolean send(String line) {
+        if (closed) return false;
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.offer(line);
+        LockSupport.unpark(sender);
+        return true;
+    }
+
+    public void close() {
+        closed = true;
+        LockSupport.unpark(sender);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // 송신 스레드 (단일 소비자)
+    private void drainLoop() {
+        try {
+            while (!closed) {
+                String line = queue.poll();
+                if (line == null) {
+                    out.flush();
+                    LockSupport.park(this);
+                    continue;
+                }
+                pending.decrementAndGet();
+                out.write(line);
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            // 소켓 끊김 -> 이후 send()는 false
+            closed = true;
+        } finally {
+            queue.clear();
+            pending.set(0);
+        }
+    }
+}
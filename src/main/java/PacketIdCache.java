@@ -0,0 +1,96 @@
+/**
+ * [중복 패킷 필터] 최근 packet_id를 일정 시간(window) 동안만 기억하는 고정 크기 캐시입니다.
+ * packet_id 문자열은 64비트 해시로만 저장하고 (long 배열, open addressing),
+ * 오래된 항목은 새 항목이 덮어쓰므로 메모리가 늘어나지 않습니다.
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Ddedupe.capacity=65536 : 기억할 최대 ID 수 (2의 거듭제곱으로 올림)
+ *   -Ddedupe.windowMs=60000 : 중복으로 판단할 시간 범위
+ */
+public class PacketIdCache {
+
+    private static final int SEGMENTS = 16;     // 락 분할 (ClientHandler 스레드 동시 접근)
+    private static final int MAX_PROBE = 8;     // 충돌 시 탐색 칸 수
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long windowMs;
+
+    public PacketIdCache(int capacity, long windowMs) {
+        int perSegment = Integer.highestOneBit(Math.max(capacity / SEGMENTS, MAX_PROBE) - 1) << 1;
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(perSegment);
+        this.windowMs = windowMs;
+    }
+
+    public static PacketIdCache fromSystemProperties() {
+        return new PacketIdCache(Integer.getInteger("dedupe.capacity", 65536), Long.getLong("dedupe.windowMs", 60000L));
+    }
+
+    /**
+     * 처음 보는 ID면 기록하고 false, window 안에 이미 본 ID면 true.
+     */
+    public boolean isDuplicate(String packetId, long nowMs) {
+        long h = hash64(packetId);
+        return segments[(int) (h >>> 60)].checkAndPut(h, nowMs, windowMs);
+    }
+
+    // 캐시 전체 크기 (bytes) - 입력량과 무관하게 고정
+    public long footprintBytes() {
+        long slots = (long) segments.length * segments[0].keys.length;
+        return slots * (Long.BYTES * 2);
+    }
+
+    // FNV-1a 64 + 섞기 (할당 없음, 0은 빈 칸 표시용이라 피함)
+    static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h == 0 ? 1 : h;
+    }
+
+    // --- 세그먼트 (해시 테이블 1개 + 락) ---
+    private static final class Segment {
+        private final long[] keys;
+        private final long[] stamps;
+        private final int mask;
+
+        Segment(int size) {
+            keys = new long[size];
+            stamps = new long[size];
+            mask = size - 1;
+        }
+
+        synchronized boolean checkAndPut(long h, long now, long windowMs) {
+            int idx = (int) h & mask;
+            int free = -1;
+            int victim = idx;
+            long oldest = Long.MAX_VALUE;
+
+            for (int p = 0; p < MAX_PROBE; p++) {
+                int i = (idx + p) & mask;
+                long k = keys[i];
+                boolean live = k != 0 && now - stamps[i] <= windowMs;
+
+                if (live) {
+                    if (k == h) return true;  // window 안의 중복
+                    if (stamps[i] < oldest) {
+                        oldest = stamps[i];
+                        victim = i;
+                    }
+                } else if (free < 0) {
+                    free = i;                 // 빈 칸/만료 칸
+                }
+            }
+
+            // 빈 칸이 없으면 탐색 범위에서 가장 오래된 항목을 덮어씀
+            int slot = free >= 0 ? free : victim;
+            keys[slot] = h;
+            stamps[slot] = now;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * [측정] PacketIdCache가 패킷 수가 늘어나도 처리 비용/메모리가 일정한지 확인합니다.
+ * 실행: PacketIdCacheBench [최대 패킷 수] (기본 10,000,000)
+ */
+public class PacketIdCacheBench {
+
+    public static void main(String[] args) {
+        long maxPackets = (args.length > 0) ? Long.parseLong(args[0]) : 10_000_000L;
+
+        // JIT 워밍업 (별도 캐시)
+        PacketIdCache warmup = new PacketIdCache(65536, 60000);
+        for (long i = 0; i < 2_000_000; i++) warmup.isDuplicate("WARM-" + i, i / 100);
+
+        PacketIdCache cache = new PacketIdCache(65536, 60000);
+        System.out.printf(">> 캐시 크기: %d KB (고정)%n", cache.footprintBytes() / 1024);
+
+        // 가상 시계: 초당 100,000 패킷 속도로 흘려보냄
+        final long packetsPerSecond = 100_000;
+        long sent = 0;
+        long duplicates = 0;
+
+        for (long batch = 10_000; batch <= maxPackets; batch *= 10) {
+            long t0 = System.nanoTime();
+            for (long i = sent; i < batch; i++) {
+                long now = i * 1000 / packetsPerSecond;
+                String id = "PKT-" + i;
+                if (cache.isDuplicate(id, now)) duplicates++;
+
+                // 1%는 직후에 재전송된 패킷
+                if (i % 100 == 0 && !cache.isDuplicate(id, now)) {
+                    System.out.println("!! 재전송 패킷을 놓침: " + id);
+                }
+            }
+            long t1 = System.nanoTime();
+
+            long count = batch - sent;
+            System.out.printf(">> 누적 %,d 패킷: %.1f ns/packet, 오탐 %d%n",
+                    batch, (t1 - t0) / (double) count, duplicates);
+            sent = batch;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * [패킷 기록] 서버로 들어온 패킷 원문을 수신 시각과 함께 한 줄씩 기록합니다. (ReplayBench 입력)
+ * 형식: {"recv_ms":1700000000000,"packet":{...클라이언트가 보낸 JSON 그대로...}}
+ *
+ * 설정: -Djournal.file=capture.jsonl (없으면 기록 안 함)
+ */
+public class PacketJournal {
+
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final Writer out;
+
+    public PacketJournal(String path) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8));
+
+        // 1초마다 flush + 종료 시 flush
+        Thread flusher = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(FLUSH_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                flush();
+            }
+        }, "journal-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    // 설정 없으면 null
+    public static PacketJournal fromSystemProperties() {
+        String path = System.getProperty("journal.file");
+        if (path == null || path.isEmpty()) return null;
+        try {
+            return new PacketJournal(path);
+        } catch (IOException e) {
+            System.err.println("!! 패킷 기록 파일 열기 실패: " + path + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    public synchronized void record(String line) {
+        try {
+            out.write("{\"recv_ms\":");
+            out.write(Long.toString(System.currentTimeMillis()));
+            out.write(",\"packet\":");
+            out.write(line);
+            out.write("}\n");
+        } catch (IOException e) {
+            // 기록 실패는 서비스에 영향 주지 않음
+        }
+    }
+
+    private synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
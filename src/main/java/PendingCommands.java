@@ -0,0 +1,240 @@
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * [명령 전달 보장] 서버가 보낸 COMMAND를 task_id로 기억해두고, ACK가 올 때까지 재전송합니다.
+ * 재전송 타이머는 공용 스케줄러 스레드 1개로 처리하므로 수만 개의 명령이 동시에 대기해도 스레드가 늘지 않습니다.
+ * (FactorySimulation에서는 가상 시계에 예약, RTT도 가상 시각 기준)
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dcmd.timeoutMs=30000 : 첫 재전송까지 대기 (이후 2배씩, 로봇 이동 시간보다 길어야 함)
+ *   -Dcmd.maxRetries=3    : 최대 재전송 횟수 (초과 시 실패 처리)
+ */
+public class PendingCommands {
+
+    // 실제 전송 (서버의 sendToDevice)
+    public interface Sender {
+        boolean send(String deviceId, String jsonStr);
+    }
+
+    // 완료/실패 알림 (로그용)
+    public interface Listener {
+        void onCompleted(String taskId, String deviceId, long rttMs, int retries);
+
+        void onFailed(String taskId, String deviceId, int attempts);
+    }
+
+    // 모든 서버가 공유하는 재전송 타이머
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "cmd-retransmit");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        // 취소된 타이머는 큐에서 바로 제거 (ACK가 빨리 오면 타이머가 쌓이지 않음)
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private static final int RTT_BUCKETS = 32; // 2^i ms 구간
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    // 장비별 대기 명령 (재접속 시 그 장비 것만 바로 재전송)
+    private final Map<String, Set<Pending>> byDevice = new ConcurrentHashMap<>();
+    private final Sender sender;
+    private final Listener listener;
+    private final FactoryClock clock;
+    private final long timeoutMs;
+    private final int maxRetries;
+
+    // 지표
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong unknownAcks = new AtomicLong();
+    private final AtomicLong resumeResends = new AtomicLong();
+    private final AtomicLongArray rttHistogram = new AtomicLongArray(RTT_BUCKETS);
+
+    public PendingCommands(Sender sender, Listener listener) {
+        this(sender, listener, FactoryClock.SYSTEM);
+    }
+
+    public PendingCommands(Sender sender, Listener listener, FactoryClock clock) {
+        this(sender, listener, clock, Long.getLong("cmd.timeoutMs", 30000L), Integer.getInteger("cmd.maxRetries", 3));
+    }
+
+    public PendingCommands(Sender sender, Listener listener, long timeoutMs, int maxRetries) {
+        this(sender, listener, FactoryClock.SYSTEM, timeoutMs, maxRetries);
+    }
+
+    public PendingCommands(Sender sender, Listener listener, FactoryClock clock, long timeoutMs, int maxRetries) {
+        this.sender = sender;
+        this.listener = listener;
+        this.clock = clock;
+        this.timeoutMs = timeoutMs;
+        this.maxRetries = maxRetries;
+    }
+
+    // ==========================================
+    // 1. 전송 / 완료
+    // ==========================================
+
+    /**
+     * 명령을 보내고 ACK 대기 목록에 올립니다. 장비가 미접속이어도 목록에 남아 재전송 때 다시 시도합니다.
+     * 같은 task_id가 이미 대기 중이면 새 명령으로 교체합니다.
+     */
+    public void send(String taskId, String deviceId, String jsonStr) {
+        Pending p = new Pending(taskId, deviceId, jsonStr, nowNs());
+        Pending old = pending.put(taskId, p);
+        if (old != null) forget(old);
+        byDevice.computeIfAbsent(deviceId, k -> ConcurrentHashMap.newKeySet()).add(p);
+
+        sent.incrementAndGet();
+        sender.send(deviceId, jsonStr);
+        schedule(p, timeoutMs);
+    }
+
+    /**
+     * ACK 수신 시 호출.
+     * @return 대기 중이던 명령이면 true
+     */
+    public boolean complete(String taskId) {
+        Pending p = pending.remove(taskId);
+        if (p == null) {
+            unknownAcks.incrementAndGet();
+            return false;
+        }
+        forget(p);
+
+        long rttMs = TimeUnit.NANOSECONDS.toMillis(nowNs() - p.firstSentNs);
+        rttHistogram.incrementAndGet(bucketOf(rttMs));
+        completed.incrementAndGet();
+        listener.onCompleted(taskId, p.deviceId, rttMs, p.attempts - 1);
+        return true;
+    }
+
+    /**
+     * 장비가 세션을 재개했을 때 그 장비의 미완료 명령을 재전송 타이머를 기다리지 않고 바로 다시 보냅니다.
+     * (재전송 횟수/타이머는 그대로, 로봇은 TaskLedger로 중복 실행을 막음)
+     * @return 다시 보낸 명령 수
+     */
+    public int resendTo(String deviceId) {
+        Set<Pending> set = byDevice.get(deviceId);
+        if (set == null) return 0;
+        int n = 0;
+        for (Pending p : set) {
+            if (pending.get(p.taskId) != p) continue;
+            sender.send(p.deviceId, p.jsonStr);
+            n++;
+        }
+        resumeResends.addAndGet(n);
+        return n;
+    }
+
+    // 대기 목록에서 빠진 명령 정리 (타이머 취소 + 장비별 색인)
+    private void forget(Pending p) {
+        p.cancel();
+        Set<Pending> set = byDevice.get(p.deviceId);
+        if (set != null) set.remove(p);
+    }
+
+    // 실제 시계는 취소 가능한 공용 TIMER, 그 외(가상 시계)는 시계에 예약 (취소 대신 onTimeout에서 무시)
+    private void schedule(Pending p, long delayMs) {
+        if (clock == FactoryClock.SYSTEM) {
+            p.timer = TIMER.schedule(() -> onTimeout(p, delayMs), delayMs, TimeUnit.MILLISECONDS);
+        } else {
+            clock.schedule(delayMs, () -> onTimeout(p, delayMs));
+        }
+    }
+
+    private long nowNs() {
+        return (clock == FactoryClock.SYSTEM) ? System.nanoTime() : TimeUnit.MILLISECONDS.toNanos(clock.now());
+    }
+
+    private void onTimeout(Pending p, long lastDelayMs) {
+        // 이미 ACK 받았거나 다른 명령으로 교체됨
+        if (pending.get(p.taskId) != p) return;
+
+        if (p.attempts > maxRetries) {
+            if (pending.remove(p.taskId, p)) {
+                forget(p);
+                failed.incrementAndGet();
+                listener.onFailed(p.taskId, p.deviceId, p.attempts);
+            }
+            return;
+        }
+
+        p.attempts++;
+        retries.incrementAndGet();
+        sender.send(p.deviceId, p.jsonStr);
+        schedule(p, lastDelayMs * 2);
+    }
+
+    // ==========================================
+    // 2. 지표
+    // ==========================================
+
+    public int inFlight() {
+        return pending.size();
+    }
+
+    public long retries() {
+        return retries.get();
+    }
+
+    // RTT 백분위 (구간 상한 ms, 데이터 없으면 0)
+    public long rttPercentileMs(double percentile) {
+        long total = 0;
+        for (int i = 0; i < RTT_BUCKETS; i++) total += rttHistogram.get(i);
+        if (total == 0) return 0;
+
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < RTT_BUCKETS; i++) {
+            seen += rttHistogram.get(i);
+            if (seen >= target) return 1L << i;
+        }
+        return 1L << (RTT_BUCKETS - 1);
+    }
+
+    public String summary() {
+        return String.format("전송 %d, 완료 %d, 대기 %d, 재전송 %d (재접속 %d), 실패 %d, 미매칭 ACK %d, RTT p50<=%dms p99<=%dms",
+                sent.get(), completed.get(), inFlight(), retries.get(), resumeResends.get(), failed.get(), unknownAcks.get(),
+                rttPercentileMs(0.50), rttPercentileMs(0.99));
+    }
+
+    // 0~1ms -> 1번, 2~3ms -> 2번, 4~7ms -> 3번 ...  (i번 구간의 상한 = 2^i ms)
+    private static int bucketOf(long ms) {
+        int b = 64 - Long.numberOfLeadingZeros(Math.max(ms, 1));
+        return Math.min(b, RTT_BUCKETS - 1);
+    }
+
+    // --- 대기 중인 명령 ---
+    private static class Pending {
+        private final String taskId;
+        private final String deviceId;
+        private final String jsonStr;
+        private final long firstSentNs;
+        private volatile int attempts = 1;
+        private volatile ScheduledFuture<?> timer;
+
+        Pending(String taskId, String deviceId, String jsonStr, long firstSentNs) {
+            this.taskId = taskId;
+            this.deviceId = deviceId;
+            this.jsonStr = jsonStr;
+            this.firstSentNs = firstSentNs;
+        }
+
+        void cancel() {
+            ScheduledFuture<?> t = timer;
+            if (t != null) t.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,460 @@
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * [위치 이력 저장소] LOCATION 패킷의 위치를 장비별 시계열로 보관하고 구간 조회를 제공합니다.
+ * ("AGV_02가 10:05~10:07 사이 어디 있었나", 대시보드 이동 경로 그리기)
+ *
+ * 저장 방식 (장비별, 열 단위):
+ *   - 점 1개 = (수신 시각, QR 노드 ID(int), 구간 번호) -> 직전 점과의 차이를 zigzag varint로 기록 (보통 4~5 bytes)
+ *   - 청크 안에서 시각 / QR / 구간을 각각 다른 버퍼(열)에 기록 -> 조회는 시각 열로 구간을 찾고 나머지 열은 필요한 곳까지만 풂
+ *   - 점 256개마다 청크를 닫고 (시작/끝 시각으로 색인) 다음 청크를 시작
+ *   - 단계별 보관 (조회 구간이 길면 거친 단계에서 읽음)
+ *       raw : 모든 점           / 기본 1시간 보관
+ *       1s  : 1초당 첫 점       / 기본 24시간 보관
+ *       1m  : 1분당 첫 점       / 기본 7일 보관
+ *
+ * 조회 (웹소켓으로 보냄):
+ *   {"op":"trail","id":"AGV_02","from":"10:05","to":"10:07","max_points":500,"req":"abc"}
+ *   from/to : epoch ms 또는 오늘 기준 "HH:mm[:ss]" (생략 시 최근 10분), max_points는 최대 10000
+ * 응답 (열 단위 배열, qr_names는 응답에 나온 QR ID만):
+ *   {"op":"trail","req":"abc","id":"AGV_02","tier":"raw","t":[...],"qr":[...],"seg":[...],"qr_names":{"12":"QR_5"}}
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dpositions.enabled=true
+ *   -Dpositions.rawRetentionMs=3600000
+ */
+public class PositionStore {
+
+    private static final int CHUNK_POINTS = 256;
+    private static final int DEFAULT_MAX_POINTS = 1000;
+    // 요청의 max_points 상한 (응답 크기 / 조회 비용 제한)
+    private static final int MAX_POINTS_LIMIT = 10_000;
+    private static final long DEFAULT_RANGE_MS = 10 * 60_000L;
+    // 한 단계에서 이 배수까지는 솎아서 읽고, 넘으면 다음(거친) 단계로
+    private static final int MAX_STRIDE = 8;
+
+    private static final String[] TIER_NAMES = {"raw", "1s", "1m"};
+    private static final long[] TIER_BUCKET_MS = {0, 1000, 60_000};
+
+    private final DeviceRegistry registry;
+    private final long[] tierRetentionMs;
+
+    // 슬롯별 시계열 (LOCATION을 보낸 장비만 생성)
+    private final AtomicReferenceArray<Series> series;
+
+    public PositionStore(DeviceRegistry registry, int capacity, long rawRetentionMs) {
+        this.registry = registry;
+        this.series = new AtomicReferenceArray<>(capacity);
+        this.tierRetentionMs = new long[]{rawRetentionMs, 24 * 3600_000L, 7 * 24 * 3600_000L};
+    }
+
+    // 설정 없으면 기본값, positions.enabled=false면 null
+    public static PositionStore fromSystemProperties(DeviceRegistry registry) {
+        if (!Boolean.parseBoolean(System.getProperty("positions.enabled", "true"))) return null;
+        return new PositionStore(registry, Integer.getInteger("device.capacity", 1024),
+                Long.getLong("positions.rawRetentionMs", 3600_000L));
+    }
+
+    // ==========================================
+    // 1. 기록 (LOCATION 처리 경로)
+    // ==========================================
+
+    public void append(int slot, long timeMs, int qrId, int segment) {
+        Series s = series.get(slot);
+        if (s == null) {
+            series.compareAndSet(slot, null, new Series());
+            s = series.get(slot);
+        }
+        s.append(timeMs, qrId, segment);
+    }
+
+    // 저장된 점 개수 (단계별 합)
+    public long points(int tier) {
+        long total = 0;
+        for (int i = 0; i < series.length(); i++) {
+            Series s = series.get(i);
+            if (s != null) total += s.points(tier);
+        }
+        return total;
+    }
+
+    // 압축된 데이터가 차지하는 바이트 수 (청크 버퍼 기준)
+    public long footprintBytes() {
+        long total = 0;
+        for (int i = 0; i < series.length(); i++) {
+            Series s = series.get(i);
+            if (s != null) total += s.bytes();
+        }
+        return total;
+    }
+
+    // ==========================================
+    // 2. 조회
+    // ==========================================
+
+    /**
+     * 웹소켓 요청 처리. 위치 조회 요청이 아니면 null.
+     */
+    public String handleRequest(String message) {
+        return handleRequest(message, false);
+    }
+
+    /**
+     * ownedOnly=true면 이 저장소에 이력이 없는 장비 요청에도 null (공용 게이트웨이에서 다른 서버가 응답하도록).
+     */
+    public String handleRequest(String message, boolean ownedOnly) {
+        JSONObject req;
+        try {
+            req = new JSONObject(message);
+        } catch (Exception e) {
+            return null;
+        }
+        if (!"trail".equals(req.optString("op"))) return null;
+
+        JSONObject reply = new JSONObject();
+        reply.put("op", "trail");
+        reply.put("req", req.opt("req"));
+        String deviceId = req.optString("id");
+        if (ownedOnly && !contains(deviceId)) return null;
+        reply.put("id", deviceId);
+
+        try {
+            long now = System.currentTimeMillis();
+            long to = req.has("to") ? parseTime(req.get("to")) : now;
+            long from = req.has("from") ? parseTime(req.get("from")) : to - DEFAULT_RANGE_MS;
+            int maxPoints = Math.max(1, Math.min(req.optInt("max_points", DEFAULT_MAX_POINTS), MAX_POINTS_LIMIT));
+
+            Trail trail = query(deviceId, from, to, maxPoints);
+            reply.put("tier", trail.tier < 0 ? JSONObject.NULL : TIER_NAMES[trail.tier]);
+            reply.put("t", new JSONArray(Arrays.copyOf(trail.time, trail.size)));
+            reply.put("qr", new JSONArray(Arrays.copyOf(trail.qr, trail.size)));
+            reply.put("seg", new JSONArray(Arrays.copyOf(trail.segment, trail.size)));
+
+            JSONObject names = new JSONObject();
+            for (int i = 0; i < trail.size; i++) {
+                String key = Integer.toString(trail.qr[i]);
+                if (trail.qr[i] >= 0 && !names.has(key)) names.put(key, registry.qrName(trail.qr[i]));
+            }
+            reply.put("qr_names", names);
+        } catch (RuntimeException e) {
+            reply.put("error", e.getMessage());
+        }
+        return reply.toString();
+    }
+
+    // 이 저장소에 위치 이력이 있는 장비인지
+    public boolean contains(String deviceId) {
+        int slot = registry.slotOf(deviceId);
+        return slot != DeviceRegistry.NO_SLOT && series.get(slot) != null;
+    }
+
+    /**
+     * [from, to] 구간의 위치 목록. 구간 안 점 개수가 max_points의 8배 이하인 가장 촘촘한 단계에서 읽고,
+     * max_points를 넘으면 일정 간격으로 솎아냅니다.
+     */
+    public Trail query(String deviceId, long from, long to, int maxPoints) {
+        int slot = registry.slotOf(deviceId);
+        Series s = (slot == DeviceRegistry.NO_SLOT) ? null : series.get(slot);
+        if (s == null) return new Trail(-1, 0);
+        return s.query(from, to, maxPoints);
+    }
+
+    // 조회 결과 (열 단위)
+    public static class Trail {
+        public final int tier;
+        public long[] time;
+        public int[] qr;
+        public int[] segment;
+        public int size;
+
+        Trail(int tier, int capacity) {
+            this.tier = tier;
+            this.time = new long[capacity];
+            this.qr = new int[capacity];
+            this.segment = new int[capacity];
+        }
+
+        void add(long t, int q, int seg) {
+            if (size == time.length) {
+                int n = Math.max(16, size * 2);
+                time = Arrays.copyOf(time, n);
+                qr = Arrays.copyOf(qr, n);
+                segment = Arrays.copyOf(segment, n);
+            }
+            time[size] = t;
+            qr[size] = q;
+            segment[size] = seg;
+            size++;
+        }
+    }
+
+    // epoch ms 숫자 또는 오늘 기준 "HH:mm[:ss]"
+    private static long parseTime(Object v) {
+        if (v instanceof Number) return ((Number) v).longValue();
+        String text = v.toString();
+        if (text.chars().allMatch(Character::isDigit)) return Long.parseLong(text);
+        return LocalDate.now().atTime(LocalTime.parse(text)).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // ==========================================
+    // 3. 장비 1대의 시계열 (단계 3개)
+    // ==========================================
+
+    private class Series {
+        private final Tier[] tiers = new Tier[TIER_NAMES.length];
+
+        Series() {
+            for (int i = 0; i < tiers.length; i++) tiers[i] = new Tier(TIER_BUCKET_MS[i], tierRetentionMs[i]);
+        }
+
+        synchronized void append(long timeMs, int qrId, int segment) {
+            for (Tier tier : tiers) tier.append(timeMs, qrId, segment);
+        }
+
+        synchronized long points(int tier) {
+            return tiers[tier].points();
+        }
+
+        synchronized long bytes() {
+            long total = 0;
+            for (Tier tier : tiers) total += tier.bytes();
+            return total;
+        }
+
+        synchronized Trail query(long from, long to, int maxPoints) {
+            // 가장 오래 보관하는 단계만큼 구간을 덮고, 솎아내는 비율이 MAX_STRIDE 이하인 가장 촘촘한 단계
+            long needFrom = Math.max(from, tiers[tiers.length - 1].firstTs());
+            int chosen = tiers.length - 1;
+            for (int i = 0; i < tiers.length; i++) {
+                if (tiers[i].firstTs() <= needFrom && tiers[i].estimate(from, to) <= (long) maxPoints * MAX_STRIDE) {
+                    chosen = i;
+                    break;
+                }
+            }
+
+            Tier tier = tiers[chosen];
+            long estimate = tier.estimate(from, to);
+            int stride = (int) Math.max(1, (estimate + maxPoints - 1) / maxPoints);
+            Trail trail = new Trail(chosen, (int) Math.min(estimate / stride + 1, maxPoints + 1));
+            tier.read(from, to, stride, trail);
+            return trail;
+        }
+    }
+
+    // ==========================================
+    // 4. 단계 1개 = 시간순 청크 목록
+    // ==========================================
+
+    private static class Tier {
+        private final long bucketMs;
+        private final long retentionMs;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private long lastBucket = Long.MIN_VALUE;
+
+        Tier(long bucketMs, long retentionMs) {
+            this.bucketMs = bucketMs;
+            this.retentionMs = retentionMs;
+        }
+
+        void append(long timeMs, int qrId, int segment) {
+            if (bucketMs > 0) {
+                long bucket = timeMs / bucketMs;
+                if (bucket == lastBucket) return;
+                lastBucket = bucket;
+            }
+
+            Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (last == null || last.count >= CHUNK_POINTS) {
+                if (last != null) last.seal();
+                expire(timeMs);
+                last = new Chunk(timeMs);
+                chunks.add(last);
+            }
+            last.append(timeMs, qrId, segment);
+        }
+
+        // 보관 기간이 지난 청크 제거 (청크를 새로 열 때만 검사)
+        private void expire(long nowMs) {
+            int drop = 0;
+            while (drop < chunks.size() && chunks.get(drop).endTs < nowMs - retentionMs) drop++;
+            if (drop > 0) chunks.subList(0, drop).clear();
+        }
+
+        long firstTs() {
+            return chunks.isEmpty() ? Long.MAX_VALUE : chunks.get(0).startTs;
+        }
+
+        // 구간과 겹치는 청크의 점 개수 합 (조회 단계 선택용 추정치)
+        long estimate(long from, long to) {
+            long n = 0;
+            for (int i = firstChunk(from); i < chunks.size(); i++) {
+                Chunk c = chunks.get(i);
+                if (c.startTs > to) break;
+                n += c.count;
+            }
+            return n;
+        }
+
+        void read(long from, long to, int stride, Trail out) {
+            int[] seen = {0};
+            for (int i = firstChunk(from); i < chunks.size(); i++) {
+                Chunk c = chunks.get(i);
+                if (c.startTs > to) break;
+                c.read(from, to, stride, seen, out);
+            }
+        }
+
+        // endTs >= from 인 첫 청크 (이진 탐색)
+        private int firstChunk(long from) {
+            int lo = 0;
+            int hi = chunks.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (chunks.get(mid).endTs < from) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        long points() {
+            long n = 0;
+            for (Chunk c : chunks) n += c.count;
+            return n;
+        }
+
+        long bytes() {
+            long n = 0;
+            for (Chunk c : chunks) n += c.bytes();
+            return n;
+        }
+    }
+
+    // ==========================================
+    // 5. 청크 = 열 3개 (시각 / QR / 구간), 열마다 차분 + zigzag varint
+    // ==========================================
+
+    private static class Chunk {
+        private final long startTs;
+        private long endTs;
+        private int count;
+        private final Column time = new Column();
+        private final Column qr = new Column();
+        private final Column seg = new Column();
+
+        // 직전 점 (차분 기준)
+        private long prevTs;
+        private int prevQr;
+        private int prevSeg;
+
+        Chunk(long startTs) {
+            this.startTs = startTs;
+            this.endTs = startTs;
+            this.prevTs = startTs;
+        }
+
+        void append(long timeMs, int qrId, int segment) {
+            time.write(timeMs - prevTs);
+            qr.write(qrId - prevQr);
+            seg.write(segment - prevSeg);
+            prevTs = timeMs;
+            prevQr = qrId;
+            prevSeg = segment;
+            endTs = Math.max(endTs, timeMs);
+            count++;
+        }
+
+        // 다 찬 청크는 남는 공간을 잘라냄
+        void seal() {
+            time.trim();
+            qr.trim();
+            seg.trim();
+        }
+
+        int bytes() {
+            return time.bytes() + qr.bytes() + seg.bytes();
+        }
+
+        // seen[0] : 구간 안에서 지금까지 만난 점 수 (stride 솎아내기용)
+        void read(long from, long to, int stride, int[] seen, Trail out) {
+            // 1. 시각 열만 풀어서 구간 끝 찾기 (to를 넘는 첫 점에서 멈춤)
+            long[] times = new long[count];
+            int[] pos = {0};
+            long t = startTs;
+            int end = 0;
+            boolean any = false;
+            while (end < count) {
+                t += time.read(pos);
+                if (t > to) break;
+                times[end++] = t;
+                if (t >= from) any = true;
+            }
+            if (!any) return;
+
+            // 2. QR / 구간 열은 구간 끝까지만 풂
+            int[] qrPos = {0};
+            int[] segPos = {0};
+            int q = 0;
+            int sg = 0;
+            for (int i = 0; i < end; i++) {
+                q += (int) qr.read(qrPos);
+                sg += (int) seg.read(segPos);
+                if (times[i] < from) continue;
+                if (seen[0]++ % stride == 0) out.add(times[i], q, sg);
+            }
+        }
+    }
+
+    // 열 1개 = 직전 값과의 차이를 zigzag varint로 이어 붙인 바이트열
+    private static class Column {
+        private byte[] buf = new byte[32];
+        private int len;
+
+        void write(long delta) {
+            long v = zigzag(delta);
+            if (len + 10 > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + 10));
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        // pos[0]부터 차이 1개를 읽고 pos를 옮김
+        long read(int[] pos) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos[0]++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return unzigzag(v);
+        }
+
+        void trim() {
+            if (buf.length != len) buf = Arrays.copyOf(buf, len);
+        }
+
+        int bytes() {
+            return buf.length;
+        }
+
+        private static long zigzag(long v) {
+            return (v << 1) ^ (v >> 63);
+        }
+
+        private static long unzigzag(long v) {
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * [측정] PositionStore에 위치 점 수백만 개를 넣고 점당 저장 크기 / 기록 비용 / 구간 조회 시간을 확인합니다.
+ * 실행: PositionStoreBench [장비 수 (기본 100)] [장비당 점 수 (기본 50,000)]
+ *
+ * 가상 시계로 장비마다 200ms 간격 LOCATION을 만들고, 3점마다 다음 QR로 이동합니다.
+ */
+public class PositionStoreBench {
+
+    private static final long INTERVAL_MS = 200;
+    private static final int QR_NODES = 500;
+
+    public static void main(String[] args) {
+        int devices = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        int perDevice = (args.length > 1) ? Integer.parseInt(args[1]) : 50_000;
+
+        DeviceRegistry registry = new DeviceRegistry(devices);
+        int[] qrIds = new int[QR_NODES];
+        for (int q = 0; q < QR_NODES; q++) qrIds[q] = registry.internQr("QR_" + q);
+        for (int d = 0; d < devices; d++) registry.register(String.format("AGV_%03d", d));
+
+        // 원본 보관 기간을 충분히 길게 (모든 점이 raw 단계에 남도록)
+        PositionStore store = new PositionStore(registry, devices, 7 * 24 * 3600_000L);
+        long base = System.currentTimeMillis() - perDevice * INTERVAL_MS;
+
+        // 1. 기록
+        long t0 = System.nanoTime();
+        for (int i = 0; i < perDevice; i++) {
+            long ts = base + i * INTERVAL_MS;
+            for (int d = 0; d < devices; d++) {
+                int step = i / 3 + d * 7;
+                store.append(d, ts + d, qrIds[step % QR_NODES], step % 40);
+            }
+        }
+        long t1 = System.nanoTime();
+
+        long total = (long) devices * perDevice;
+        long bytes = store.footprintBytes();
+        System.out.printf(">> 기록 %,d 점: %.0f ns/점%n", total, (t1 - t0) / (double) total);
+        System.out.printf(">> 점 개수 raw=%,d 1s=%,d 1m=%,d%n", store.points(0), store.points(1), store.points(2));
+        System.out.printf(">> 압축 크기 %,d KB (raw 점 기준 %.2f bytes/점, 원본 16 bytes/점)%n",
+                bytes / 1024, bytes / (double) store.points(0));
+
+        // 2. 조회 (가장 최근 구간부터 전체 구간까지)
+        long end = base + perDevice * INTERVAL_MS;
+        long[] ranges = {2 * 60_000L, 30 * 60_000L, 2 * 3600_000L, perDevice * INTERVAL_MS};
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1; // 첫 바퀴는 JIT 워밍업
+            for (long range : ranges) {
+                int queries = 1000;
+                long q0 = System.nanoTime();
+                int points = 0;
+                String tier = null;
+                for (int k = 0; k < queries; k++) {
+                    String id = String.format("AGV_%03d", k % devices);
+                    PositionStore.Trail trail = store.query(id, end - range, end, 1000);
+                    points += trail.size;
+                    tier = trail.tier == 0 ? "raw" : trail.tier == 1 ? "1s" : "1m";
+                }
+                long q1 = System.nanoTime();
+                if (print) {
+                    System.out.printf(">> 조회 %4d분 구간 (max 1000점): 단계 %-3s 평균 %5d점, %7.1f us/조회%n",
+                            range / 60_000, tier, points / queries, (q1 - q0) / 1000.0 / queries);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * [우선순위 레인] 수신 패킷의 후처리(로그 출력 + 대시보드 중계)를 타입별 레인에 나눠 담고,
+ * 전용 스레드 1개가 가중치 순서로 꺼내서 처리합니다.
+ * 위치(LOCATION) 패킷이 수백 개 밀려 있어도 COMMAND/ACK는 한 바퀴 안에 처리됩니다.
+ *
+ * 레인 (모두 최대 대기 개수가 있어서 대시보드/로그가 느려도 메모리가 계속 늘지 않음):
+ *   CONTROL   : COMMAND, ACK                                      (가득 차면 새로 들어온 것을 버리고 셈 -> 먼저 온 순서 유지)
+ *   STATE     : STATUS, EVENT, RESPONSE 등 LOCATION이 아닌 나머지   (CONTROL과 같음)
+ *   TELEMETRY : LOCATION                                          (가득 차면 가장 오래된 것부터 버림 -> 최신 위치가 중요)
+ * 레인은 후처리(로그/대시보드)만 담으므로 버려도 장비 명령 처리에는 영향이 없습니다.
+ *
+ * 한 바퀴에 CONTROL 최대 w0개 -> STATE 최대 w1개 -> TELEMETRY 최대 w2개 순서로 처리합니다.
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dlanes.enabled=true              : false면 레인 없이 수신 스레드에서 바로 처리 (기존 방식)
+ *   -Dlanes.weights=8,4,1             : 레인별 한 바퀴 처리 개수
+ *   -Dlanes.capacity=50000            : CONTROL / STATE 레인 최대 대기 개수 (평소에는 닿지 않는 안전선)
+ *   -Dlanes.telemetryCapacity=10000   : TELEMETRY 레인 최대 대기 개수
+ */
+public class PriorityLanes {
+
+    public static final int CONTROL = 0;
+    public static final int STATE = 1;
+    public static final int TELEMETRY = 2;
+
+    private static final String[] LANE_NAMES = {"CONTROL", "STATE", "TELEMETRY"};
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final long REPORT_INTERVAL_MS = 1000;
+
+    // 대기 중인 작업 1개 (대기 시간 측정용 시각 포함)
+    private static class Task {
+        private final Runnable work;
+        private final long enqueuedNs;
+
+        Task(Runnable work, long enqueuedNs) {
+            this.work = work;
+            this.enqueuedNs = enqueuedNs;
+        }
+    }
+
+    private final int[] weights;
+    private final int[] capacities;
+
+    private final List<ConcurrentLinkedQueue<Task>> queues = new ArrayList<>(LANE_NAMES.length);
+    private final AtomicInteger[] sizes = new AtomicInteger[LANE_NAMES.length];
+    private final AtomicLong[] processed = new AtomicLong[LANE_NAMES.length];
+    private final AtomicLong[] maxWaitNs = new AtomicLong[LANE_NAMES.length];
+    private final AtomicLong[] dropped = new AtomicLong[LANE_NAMES.length];
+    private final AtomicLong lastReportMs = new AtomicLong();
+
+    private final Thread worker;
+
+    public PriorityLanes(String name, int[] weights, int telemetryCapacity) {
+        this(name, weights, 50_000, telemetryCapacity);
+    }
+
+    public PriorityLanes(String name, int[] weights, int capacity, int telemetryCapacity) {
+        this.weights = weights;
+        this.capacities = new int[]{capacity, capacity, telemetryCapacity};
+        for (int i = 0; i < LANE_NAMES.length; i++) {
+            queues.add(new ConcurrentLinkedQueue<>());
+            sizes[i] = new AtomicInteger();
+            processed[i] = new AtomicLong();
+            maxWaitNs[i] = new AtomicLong();
+            dropped[i] = new AtomicLong();
+        }
+        this.worker = new Thread(this::drainLoop, "lanes-" + name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // 설정에 따라 생성, lanes.enabled=false면 null (호출하는 쪽에서 바로 실행)
+    public static PriorityLanes fromSystemProperties(String name) {
+        if (!Boolean.parseBoolean(System.getProperty("lanes.enabled", "true"))) return null;
+
+        String[] parts = System.getProperty("lanes.weights", "8,4,1").split(",");
+        int[] weights = new int[LANE_NAMES.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Math.max(1, Integer.parseInt(parts[Math.min(i, parts.length - 1)].trim()));
+        }
+        return new PriorityLanes(name, weights, Integer.getInteger("lanes.capacity", 50_000),
+                Integer.getInteger("lanes.telemetryCapacity", 10_000));
+    }
+
+    // 패킷 타입 -> 레인 (버려도 되는 건 LOCATION뿐, 모르는 타입은 STATE)
+    public static int laneOf(String type) {
+        if ("COMMAND".equals(type) || "ACK".equals(type)) return CONTROL;
+        if ("LOCATION".equals(type)) return TELEMETRY;
+        return STATE;
+    }
+
+    // ==========================================
+    // 1. 넣기 (수신 스레드, 절대 막히지 않음)
+    // ==========================================
+
+    public void submit(int lane, Runnable work) {
+        if (lane != TELEMETRY) {
+            // 1. CONTROL / STATE: 가득 찼으면 새 작업을 버림 (이미 쌓인 순서는 그대로)
+            if (sizes[lane].incrementAndGet() > capacities[lane]) {
+                sizes[lane].decrementAndGet();
+                reportDrop(lane, dropped[lane].incrementAndGet());
+                return;
+            }
+            queues.get(lane).offer(new Task(work, System.nanoTime()));
+        } else {
+            // 2. TELEMETRY: 넣고 넘치면 가장 오래된 위치 정보부터 버림
+            queues.get(lane).offer(new Task(work, System.nanoTime()));
+            if (sizes[lane].incrementAndGet() > capacities[lane] && queues.get(lane).poll() != null) {
+                sizes[lane].decrementAndGet();
+                reportDrop(lane, dropped[lane].incrementAndGet());
+            }
+        }
+        LockSupport.unpark(worker);
+    }
+
+    public int pending(int lane) {
+        return sizes[lane].get();
+    }
+
+    public long dropped(int lane) {
+        return dropped[lane].get();
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("레인 처리 현황:");
+        for (int i = 0; i < LANE_NAMES.length; i++) {
+            sb.append(String.format(" %s=%d건(최대 대기 %.1fms)", LANE_NAMES[i], processed[i].get(), maxWaitNs[i].get() / 1e6));
+        }
+        sb.append(", 폐기");
+        for (int i = 0; i < LANE_NAMES.length; i++) sb.append(' ').append(LANE_NAMES[i]).append('=').append(dropped[i].get());
+        return sb.toString();
+    }
+
+    // ==========================================
+    // 2. 처리 (전용 스레드, 가중치 라운드 로빈)
+    // ==========================================
+
+    private void drainLoop() {
+        while (true) {
+            boolean any = false;
+            for (int lane = 0; lane < LANE_NAMES.length; lane++) {
+                for (int n = 0; n < weights[lane]; n++) {
+                    Task task = queues.get(lane).poll();
+                    if (task == null) break;
+                    sizes[lane].decrementAndGet();
+                    any = true;
+                    run(lane, task);
+                }
+            }
+            if (!any) LockSupport.park(this);
+        }
+    }
+
+    private void run(int lane, Task task) {
+        long waited = System.nanoTime() - task.enqueuedNs;
+        if (waited > maxWaitNs[lane].get()) maxWaitNs[lane].set(waited);
+        processed[lane].incrementAndGet();
+        try {
+            task.work.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void reportDrop(int lane, long total) {
+        long now = System.currentTimeMillis();
+        long last = lastReportMs.get();
+        if (now - last >= REPORT_INTERVAL_MS && lastReportMs.compareAndSet(last, now)) {
+            System.out.printf("[%s] [%-8s] %s 레인 포화 -> %s 누적 %d건 폐기%n",
+                    LocalTime.now().format(TIME_FMT), "LANES", LANE_NAMES[lane],
+                    lane == TELEMETRY ? "오래된 위치 패킷" : "새 후처리 작업", total);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * [측정] 위치 패킷이 처리 능력보다 많이 들어올 때 COMMAND/ACK가 얼마나 기다리는지 비교합니다.
+ *   - fifo  : 모든 패킷을 한 줄로 처리 (기존 방식과 같은 순서)
+ *   - lanes : PriorityLanes 가중치 처리
+ * 실행: PriorityLanesBench [처리 비용 us/패킷 (기본 50)] [위치 패킷 유입 배율 (기본 2.0)]
+ *
+ * 작업 1개 = 로그 출력 + 대시보드 중계를 흉내 낸 바쁜 대기 (코어 수와 관계없이 순서 효과만 측정)
+ */
+public class PriorityLanesBench {
+
+    private static final long DURATION_MS = 2000;
+    private static final long CONTROL_INTERVAL_MS = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        long workUs = (args.length > 0) ? Long.parseLong(args[0]) : 50;
+        double overload = (args.length > 1) ? Double.parseDouble(args[1]) : 2.0;
+
+        System.out.printf(">> 처리 비용 %dus/패킷, 위치 패킷 유입 = 처리 능력 x %.1f, %dms 동안%n", workUs, overload, DURATION_MS);
+        run("fifo", workUs, overload, true);
+        run("lanes", workUs, overload, false);
+    }
+
+    private static void run(String mode, long workUs, double overload, boolean fifo) throws InterruptedException {
+        // fifo는 기존 방식(무제한 한 줄)을 흉내 내므로 STATE 레인 상한 없음
+        PriorityLanes lanes = new PriorityLanes("bench-" + mode, new int[]{8, 4, 1}, Integer.MAX_VALUE, 10_000);
+        int controls = (int) (DURATION_MS / CONTROL_INTERVAL_MS);
+        AtomicLongArray waits = new AtomicLongArray(controls);
+        AtomicInteger done = new AtomicInteger();
+        long workNs = workUs * 1000;
+
+        // 위치 패킷: 처리 능력의 overload배 속도로 유입
+        long telemetryGapNs = (long) (workNs / overload);
+        Thread telemetry = new Thread(() -> {
+            long start = System.nanoTime();
+            long next = start;
+            while (System.nanoTime() - start < DURATION_MS * 1_000_000L) {
+                while (System.nanoTime() < next) Thread.onSpinWait();
+                next += telemetryGapNs;
+                lanes.submit(fifo ? PriorityLanes.STATE : PriorityLanes.TELEMETRY, () -> spin(workNs));
+            }
+        });
+        telemetry.setDaemon(true);
+        telemetry.start();
+
+        // COMMAND/ACK: 10ms마다 1개
+        for (int i = 0; i < controls; i++) {
+            final int idx = i;
+            final long submitted = System.nanoTime();
+            lanes.submit(fifo ? PriorityLanes.STATE : PriorityLanes.CONTROL, () -> {
+                waits.set(idx, System.nanoTime() - submitted);
+                done.incrementAndGet();
+                spin(workNs);
+            });
+            Thread.sleep(CONTROL_INTERVAL_MS);
+        }
+        telemetry.join();
+
+        // FIFO는 밀린 위치 패킷을 다 처리해야 마지막 제어 패킷이 실행됨
+        while (done.get() < controls) Thread.sleep(10);
+
+        long[] sorted = new long[controls];
+        for (int i = 0; i < controls; i++) sorted[i] = waits.get(i);
+        Arrays.sort(sorted);
+        System.out.printf("%-6s 제어 패킷 대기 p50=%8.2fms p99=%8.2fms max=%8.2fms | %s%n", mode,
+                sorted[controls / 2] / 1e6, sorted[(int) (controls * 0.99)] / 1e6, sorted[controls - 1] / 1e6,
+                lanes.summary());
+    }
+
+    private static void spin(long ns) {
+        long end = System.nanoTime() + ns;
+        while (System.nanoTime() < end) Thread.onSpinWait();
+    }
+}
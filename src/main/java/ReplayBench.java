@@ -0,0 +1,280 @@
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * [재생 벤치마크] PacketJournal로 기록한 트래픽을 서버에 그대로 다시 넣고,
+ * 수신(TCP) 처리량 / 웹소켓 송출량 / 지연 시간(TCP 전송 -> 웹소켓 수신)을 측정합니다.
+ *
+ * 실행: ReplayBench <capture.jsonl> [--host 127.0.0.1] [--port 9001] [--ws-port 9002]
+ *                                   [--speed 1.0 | --saturate] [--drain-ms 2000] [--out summary.json]
+ *   --speed N    : 기록된 시간 간격을 N배 빠르게 재생 (1.0 = 원래 속도)
+ *   --saturate   : 간격 무시하고 최대 속도로 주입
+ *
+ * 입력 형식: PacketJournal 줄 ({"recv_ms":..,"packet":{..}}) 또는 클라이언트 패킷 원문 (시간 정보 없으면 10ms 간격)
+ * 패킷마다 packet_id를 실행별 고유값으로 바꿔서 보냄 (서버 중복 필터 통과 + 지연 매칭용)
+ */
+public class ReplayBench {
+
+    private static final long DEFAULT_GAP_MS = 10;
+
+    // 재생할 패킷 1개
+    private static class Entry {
+        private final long offsetMs;
+        private final String sender;
+        private final String line;
+
+        Entry(long offsetMs, String sender, String line) {
+            this.offsetMs = offsetMs;
+            this.sender = sender;
+            this.line = line;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("사용법: ReplayBench <capture.jsonl> [--host H] [--port P] [--ws-port W] [--speed N | --saturate] [--drain-ms MS] [--out FILE]");
+            return;
+        }
+
+        String capture = args[0];
+        String host = "127.0.0.1";
+        int port = 9001;
+        int wsPort = 9002;
+        double speed = 1.0;
+        boolean saturate = false;
+        long drainMs = 2000;
+        String outFile = null;
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--ws-port": wsPort = Integer.parseInt(args[++i]); break;
+                case "--speed": speed = Double.parseDouble(args[++i]); break;
+                case "--saturate": saturate = true; break;
+                case "--drain-ms": drainMs = Long.parseLong(args[++i]); break;
+                case "--out": outFile = args[++i]; break;
+                default: throw new IllegalArgumentException("알 수 없는 옵션: " + args[i]);
+            }
+        }
+
+        // 1. 기록 로드 (packet_id 교체 + 직렬화는 미리 끝냄 -> 주입 중 부하 없음)
+        String runId = "RPL" + Long.toString(System.currentTimeMillis(), 36);
+        List<Entry> entries = load(capture, runId);
+        if (entries.isEmpty()) {
+            System.err.println("!! 재생할 패킷이 없습니다: " + capture);
+            return;
+        }
+        int n = entries.size();
+        System.out.println(">> 로드 완료: " + n + " packets, 장비 " + countSenders(entries) + "대");
+
+        AtomicLongArray sentAt = new AtomicLongArray(n);
+        AtomicLongArray latency = new AtomicLongArray(n);
+
+        // 2. 웹소켓 관찰자 연결 (송출량 + 지연 측정)
+        AtomicLong wsMessages = new AtomicLong();
+        AtomicLong wsBytes = new AtomicLong();
+        AtomicLong lastWsAt = new AtomicLong();
+        String idPrefix = runId + "-";
+
+        WebSocketClient observer = new WebSocketClient(new URI("ws://" + host + ":" + wsPort)) {
+            @Override
+            public void onOpen(ServerHandshake handshake) {}
+
+            @Override
+            public void onMessage(String message) {
+                long now = System.nanoTime();
+                wsMessages.incrementAndGet();
+                wsBytes.addAndGet(message.length());
+                lastWsAt.set(now);
+
+                int idx = replayIndexOf(message, idPrefix);
+                if (idx >= 0 && idx < latency.length()) {
+                    long sent = sentAt.get(idx);
+                    if (sent != 0) latency.compareAndSet(idx, 0, Math.max(1, now - sent));
+                }
+            }
+
+            @Override
+            public void onClose(int code, String reason, boolean remote) {}
+
+            @Override
+            public void onError(Exception ex) {
+                System.err.println("!! 웹소켓 에러: " + ex.getMessage());
+            }
+        };
+        if (!observer.connectBlocking()) {
+            System.err.println("!! 웹소켓 연결 실패 (Port: " + wsPort + ")");
+            return;
+        }
+
+        // 3. 장비 수만큼 TCP 연결 (서버가 보내는 명령은 읽어서 버림)
+        Map<String, PrintWriter> devices = new LinkedHashMap<>();
+        List<Socket> sockets = new ArrayList<>();
+        for (Entry e : entries) {
+            if (devices.containsKey(e.sender)) continue;
+            Socket socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            sockets.add(socket);
+            devices.put(e.sender, new PrintWriter(new java.io.OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true));
+            Thread drain = new Thread(() -> discard(socket), "replay-drain-" + e.sender);
+            drain.setDaemon(true);
+            drain.start();
+        }
+
+        // 4. 주입
+        String mode = saturate ? "saturate" : (speed == 1.0 ? "original" : speed + "x");
+        System.out.println(">> 재생 시작 (" + mode + ")");
+
+        long startNs = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            Entry e = entries.get(i);
+            if (!saturate) {
+                long dueNs = startNs + (long) (e.offsetMs * 1_000_000L / speed);
+                long waitNs = dueNs - System.nanoTime();
+                if (waitNs > 0) Thread.sleep(waitNs / 1_000_000L, (int) (waitNs % 1_000_000L));
+            }
+            sentAt.set(i, System.nanoTime());
+            devices.get(e.sender).println(e.line);
+        }
+        long injectEndNs = System.nanoTime();
+
+        // 5. 웹소켓 송출이 멈출 때까지 대기
+        lastWsAt.compareAndSet(0, injectEndNs);
+        while (System.nanoTime() - Math.max(lastWsAt.get(), injectEndNs) < drainMs * 1_000_000L) {
+            Thread.sleep(50);
+        }
+
+        observer.close();
+        for (Socket s : sockets) s.close();
+
+        // 6. 결과 정리
+        JSONObject summary = summarize(mode, n, devices.size(), startNs, injectEndNs, lastWsAt.get(),
+                wsMessages.get(), wsBytes.get(), latency);
+        String json = summary.toString(2);
+        System.out.println(json);
+
+        if (outFile != null) {
+            try (FileWriter w = new FileWriter(outFile, StandardCharsets.UTF_8)) {
+                w.write(json);
+                w.write('\n');
+            }
+            System.out.println(">> 결과 저장: " + outFile);
+        }
+    }
+
+    private static List<Entry> load(String path, String runId) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long firstMs = -1;
+        long lastOffset = 0;
+
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String raw;
+            while ((raw = in.readLine()) != null) {
+                raw = raw.trim();
+                if (raw.isEmpty()) continue;
+
+                JSONObject o = new JSONObject(raw);
+                JSONObject packet = o.has("packet") ? o.getJSONObject("packet") : o;
+                JSONObject header = packet.getJSONObject("header");
+
+                long offset;
+                if (o.has("recv_ms")) {
+                    long t = o.getLong("recv_ms");
+                    if (firstMs < 0) firstMs = t;
+                    offset = Math.max(t - firstMs, lastOffset);
+                } else {
+                    offset = entries.isEmpty() ? 0 : lastOffset + DEFAULT_GAP_MS;
+                }
+                lastOffset = offset;
+
+                header.put("packet_id", runId + "-" + entries.size());
+                entries.add(new Entry(offset, header.getString("sender_id"), packet.toString()));
+            }
+        }
+        return entries;
+    }
+
+    // 웹소켓 메시지에서 "packet_id":"RPLxxx-<번호>" 의 번호 추출 (없으면 -1)
+    private static int replayIndexOf(String message, String idPrefix) {
+        int p = message.indexOf(idPrefix);
+        if (p < 0) return -1;
+        int start = p + idPrefix.length();
+        int end = start;
+        while (end < message.length() && Character.isDigit(message.charAt(end))) end++;
+        if (end == start) return -1;
+        return Integer.parseInt(message, start, end, 10);
+    }
+
+    private static JSONObject summarize(String mode, int packets, int devices, long startNs, long injectEndNs,
+                                        long lastWsNs, long wsMessages, long wsBytes, AtomicLongArray latency) {
+        long[] samples = new long[latency.length()];
+        int matched = 0;
+        for (int i = 0; i < latency.length(); i++) {
+            long v = latency.get(i);
+            if (v > 0) samples[matched++] = v;
+        }
+        samples = Arrays.copyOf(samples, matched);
+        Arrays.sort(samples);
+
+        double injectSec = Math.max(injectEndNs - startNs, 1) / 1e9;
+        double egressSec = Math.max(Math.max(lastWsNs, injectEndNs) - startNs, 1) / 1e9;
+
+        JSONObject s = new JSONObject();
+        s.put("mode", mode);
+        s.put("devices", devices);
+        s.put("packets_sent", packets);
+        s.put("inject_duration_ms", Math.round(injectSec * 1000));
+        s.put("ingress_rate_pps", Math.round(packets / injectSec));
+        s.put("ws_messages", wsMessages);
+        s.put("ws_bytes", wsBytes);
+        s.put("ws_egress_rate_mps", Math.round(wsMessages / egressSec));
+        s.put("latency_matched", matched);
+
+        JSONObject lat = new JSONObject();
+        lat.put("p50", percentileMs(samples, 0.50));
+        lat.put("p90", percentileMs(samples, 0.90));
+        lat.put("p99", percentileMs(samples, 0.99));
+        lat.put("max", percentileMs(samples, 1.0));
+        s.put("latency_ms", lat);
+        return s;
+    }
+
+    private static double percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * p) - 1);
+        return Math.round(sorted[Math.max(idx, 0)] / 1000.0) / 1000.0;
+    }
+
+    private static int countSenders(List<Entry> entries) {
+        return (int) entries.stream().map(e -> e.sender).distinct().count();
+    }
+
+    private static void discard(Socket socket) {
+        byte[] buf = new byte[8192];
+        try (InputStream in = socket.getInputStream()) {
+            while (in.read(buf) != -1) { /* ignore */ }
+        } catch (IOException e) {
+            // 종료
+        }
+    }
+}
@@ -0,0 +1,392 @@
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * [시나리오 관리자] 시나리오 파일 여러 개를 동시에 실행하고, 파일이 바뀌면 서버 재시작 없이 교체합니다.
+ * 시나리오 ID = 파일 이름에서 .json을 뺀 것 (agv_scenario.json -> agv_scenario)
+ *
+ * 설정 (시스템 프로퍼티, name = agv / amr):
+ *   -Dscenario.<name>.dir=scenarios/agv : 폴더 안의 *.json을 모두 실행 + 변경 감시 (WatchService)
+ *   (미설정 시 기존처럼 시나리오 파일 1개만 1회 실행)
+ *   -Dscenario.streamBytes=1048576 : 이 크기 이상인 파일은 스트리밍으로 읽음 (ScenarioReader)
+ *   -Dscenario.prefetch=256        : 스트리밍 시 실행 시각보다 미리 읽어 둘 단계 수
+ *
+ * 큰 파일 (streamBytes 이상):
+ *   - 전용 읽기 스레드가 단계를 조금씩 파싱해 크기 제한 큐(prefetch)에 채움 -> 메모리 일정, 첫 단계 바로 실행
+ *   - 정렬하지 않으므로 time_offset_ms가 줄어드는 단계를 만나면 그 자리에서 시나리오 중단
+ *   - 변경 여부는 내용 대신 크기 + 수정 시각으로 판단, 교체 전 검증은 첫 단계까지만
+ *
+ * 파일 변경 시:
+ *   - 추가   -> 바로 시작
+ *   - 수정   -> 새 내용 검증 후 실행 중인 것을 멈추고 처음부터 다시 시작 (검증 실패 시 기존 것 유지)
+ *   - 삭제   -> 중지
+ * 파일 읽기/파싱/검증은 감시 스레드에서 하므로 장비 연결(TCP) 스레드에는 영향이 없습니다.
+ */
+public class ScenarioManager {
+
+    // 실행할 단계 공급 (time_offset_ms 순, 끝이면 null)
+    interface Steps extends Closeable {
+        JSONObject next() throws IOException, InterruptedException;
+
+        @Override
+        void close();
+    }
+
+    // 서버별 단계 처리 (패킷 생성/전송)
+    public interface StepHandler {
+        void onStep(String scenarioId, JSONObject step);
+
+        void onFinished(String scenarioId);
+    }
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final String[] REQUIRED_KEYS = {"time_offset_ms", "sender_id", "receiver_id", "message_type", "command", "description"};
+
+    // 편집기가 저장 중에 이벤트를 여러 번 보내므로 잠깐 기다렸다가 읽음
+    private static final long SETTLE_MS = 300;
+
+    private static final long STREAM_BYTES = Long.getLong("scenario.streamBytes", 1 << 20);
+    private static final int PREFETCH = Integer.getInteger("scenario.prefetch", 256);
+
+    private final String name;
+    private final StepHandler handler;
+    private final long startDelayMs;
+
+    // 시나리오 ID -> 실행 중인 시나리오
+    private final Map<String, Runner> running = new ConcurrentHashMap<>();
+    // 시나리오 ID -> 마지막으로 적용한 파일 내용 (내용이 같으면 다시 시작하지 않음, 큰 파일은 크기@수정 시각)
+    private final Map<String, String> loadedContent = new HashMap<>();
+
+    public ScenarioManager(String name, StepHandler handler, long startDelayMs) {
+        this.name = name;
+        this.handler = handler;
+        this.startDelayMs = startDelayMs;
+    }
+
+    /**
+     * 설정에 따라 시작합니다.
+     * scenario.<name>.dir이 있으면 폴더 감시, 없으면 defaultFile 하나만 실행.
+     */
+    public void startFromSystemProperties(String defaultFile) {
+        String dir = System.getProperty("scenario." + name + ".dir");
+        Thread t = (dir == null || dir.isEmpty())
+                ? new Thread(() -> loadOnce(Paths.get(defaultFile)), "scenario-" + name)
+                : new Thread(() -> watch(Paths.get(dir)), "scenario-watch-" + name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public Set<String> ids() {
+        return new TreeSet<>(running.keySet());
+    }
+
+    public boolean isRunning(String scenarioId) {
+        return running.containsKey(scenarioId);
+    }
+
+    public boolean stop(String scenarioId) {
+        Runner r = running.remove(scenarioId);
+        if (r == null) return false;
+        r.interrupt();
+        printLog("SCENARIO", "[" + scenarioId + "] 중지");
+        return true;
+    }
+
+    // ==========================================
+    // 1. 로드 (단일 파일 / 폴더 감시)
+    // ==========================================
+
+    private void loadOnce(Path file) {
+        if (!Files.exists(file)) {
+            printLog("ERROR", "파일 없음: " + file);
+            return;
+        }
+        apply(file, startDelayMs);
+    }
+
+    private void watch(Path dir) {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            Files.createDirectories(dir);
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            printLog("SCENARIO", "시나리오 폴더 감시 시작: " + dir.toAbsolutePath());
+
+            // 1. 처음 있던 파일들 실행
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+                for (Path file : files) apply(file, startDelayMs);
+            }
+
+            // 2. 변경 감시
+            while (true) {
+                WatchKey key = watcher.take();
+                Thread.sleep(SETTLE_MS);
+
+                Set<Path> changed = new TreeSet<>();
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                        Path file = dir.resolve((Path) event.context());
+                        if (file.toString().endsWith(".json")) changed.add(file);
+                    }
+                    key.reset();
+                } while ((key = watcher.poll()) != null);
+
+                for (Path file : changed) {
+                    if (Files.exists(file)) {
+                        apply(file, 0);
+                    } else {
+                        remove(idOf(file));
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 종료
+        } catch (IOException e) {
+            printLog("ERROR", "시나리오 폴더 감시 실패: " + dir + " (" + e.getMessage() + ")");
+        }
+    }
+
+    // ==========================================
+    // 2. 검증 + 교체
+    // ==========================================
+
+    private void apply(Path file, long delayMs) {
+        String id = idOf(file);
+        String content;
+        Steps steps;
+        String summary;
+        try {
+            long size = Files.size(file);
+            if (size >= STREAM_BYTES) {
+                content = size + "@" + Files.getLastModifiedTime(file);
+                if (content.equals(loadedContent.get(id))) return;
+                steps = new Prefetcher("scenario-read-" + name + "-" + id, new ScenarioReader(file), PREFETCH);
+                summary = "스트리밍, " + (size >> 20) + "MB";
+            } else {
+                content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                if (content.equals(loadedContent.get(id))) return;
+                List<JSONObject> list = parse(content);
+                steps = of(list);
+                summary = list.size() + " steps";
+            }
+        } catch (IOException e) {
+            printLog("ERROR", "[" + id + "] 읽기 실패: " + e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            printLog("ERROR", "[" + id + "] 검증 실패, 기존 시나리오 유지: " + e.getMessage());
+            return;
+        }
+
+        loadedContent.put(id, content);
+        Runner next = new Runner(id, steps, delayMs);
+        Runner prev = running.put(id, next);
+        if (prev != null) {
+            prev.interrupt();
+            printLog("SCENARIO", "[" + id + "] 변경 감지 -> 새 버전으로 교체 (" + summary + ")");
+        } else {
+            printLog("SCENARIO", "[" + id + "] 로드 완료 (" + summary + ")");
+        }
+        next.start();
+    }
+
+    private void remove(String id) {
+        loadedContent.remove(id);
+        stop(id);
+    }
+
+    // 형식 검사 + time_offset_ms 순 정렬 (잘못된 단계가 하나라도 있으면 전체 거부)
+    static List<JSONObject> parse(String content) {
+        JSONArray array = new JSONArray(content);
+        List<JSONObject> steps = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject step = array.getJSONObject(i);
+            validate(step, i);
+            steps.add(step);
+        }
+        steps.sort(Comparator.comparingLong(s -> s.getLong("time_offset_ms")));
+        return steps;
+    }
+
+    // 단계 1개 형식 검사 (parse / ScenarioReader 공용)
+    static void validate(JSONObject step, int i) {
+        for (String key : REQUIRED_KEYS) {
+            if (!step.has(key)) throw new IllegalArgumentException("step " + i + ": '" + key + "' 없음");
+        }
+        if (step.getLong("time_offset_ms") < 0) {
+            throw new IllegalArgumentException("step " + i + ": time_offset_ms < 0");
+        }
+    }
+
+    /**
+     * 파일 크기에 따라 단계 공급을 엽니다. (작은 파일 = 전체 파싱 + 정렬, 큰 파일 = ScenarioReader 스트리밍)
+     * 호출한 스레드에서 바로 읽으므로 읽기 스레드가 없습니다. (FactorySimulation처럼 결정적 실행용)
+     */
+    static Steps open(Path file) throws IOException {
+        if (Files.size(file) >= STREAM_BYTES) return new ScenarioReader(file);
+        return of(parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+    }
+
+    private static Steps of(List<JSONObject> list) {
+        return new Steps() {
+            private int next = 0;
+
+            @Override
+            public JSONObject next() {
+                return next < list.size() ? list.get(next++) : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static String idOf(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.endsWith(".json") ? fileName.substring(0, fileName.length() - 5) : fileName;
+    }
+
+    // ==========================================
+    // 3. 시나리오 1개 실행 스레드
+    // ==========================================
+
+    private class Runner extends Thread {
+        private final String id;
+        private final Steps steps;
+        private final long delayMs;
+
+        Runner(String id, Steps steps, long delayMs) {
+            super("scenario-" + name + "-" + id);
+            setDaemon(true);
+            this.id = id;
+            this.steps = steps;
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (delayMs > 0) {
+                    printLog("SCENARIO", "[" + id + "] " + (delayMs / 1000) + "초 후 시나리오를 시작합니다.");
+                    Thread.sleep(delayMs);
+                }
+
+                long startTime = System.currentTimeMillis();
+                JSONObject step;
+                while ((step = steps.next()) != null) {
+                    // 타이밍 맞추기
+                    long offset = step.getLong("time_offset_ms");
+                    long waitTime = offset - (System.currentTimeMillis() - startTime);
+                    if (waitTime > 0) Thread.sleep(waitTime);
+                    if (running.get(id) != this) return;
+
+                    FactoryEvents.ScenarioStep event = new FactoryEvents.ScenarioStep();
+                    event.begin();
+                    long actual = System.currentTimeMillis() - startTime;
+                    handler.onStep(id, step);
+                    event.end(name, id, step, offset, actual);
+                }
+                printLog("SCENARIO", "[" + id + "] 모든 시나리오 종료.");
+                handler.onFinished(id);
+            } catch (InterruptedException e) {
+                // 교체/중지됨
+            } catch (IOException | IllegalArgumentException e) {
+                // 스트리밍 중 읽기 실패 / 형식 오류 / offset 역행 -> 이미 실행한 단계는 그대로, 여기서 중단
+                printLog("ERROR", "[" + id + "] 시나리오 중단: " + e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                steps.close();
+                running.remove(id, this);
+            }
+        }
+    }
+
+    // ==========================================
+    // 4. 미리 읽기 (큰 파일: 읽기 스레드 -> 크기 제한 큐 -> Runner)
+    // ==========================================
+
+    private static class Prefetcher implements Steps {
+        // 끝 표시 (오류로 끝났으면 error에 원인)
+        private static final JSONObject END = new JSONObject();
+
+        private final ScenarioReader reader;
+        private final BlockingQueue<JSONObject> window;
+        private final Thread thread;
+        private volatile Exception error;
+
+        Prefetcher(String threadName, ScenarioReader reader, int window) {
+            this.reader = reader;
+            this.window = new ArrayBlockingQueue<>(window);
+            this.thread = new Thread(this::fill, threadName);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void fill() {
+            try {
+                JSONObject step;
+                while ((step = reader.next()) != null) {
+                    window.put(step); // 큐가 차면 실행이 따라올 때까지 대기
+                }
+            } catch (InterruptedException e) {
+                return; // 중지됨
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            } finally {
+                reader.close();
+            }
+            try {
+                window.put(END);
+            } catch (InterruptedException e) {
+                // 중지됨
+            }
+        }
+
+        @Override
+        public JSONObject next() throws IOException, InterruptedException {
+            JSONObject step = window.take();
+            if (step != END) return step;
+            window.put(END); // 다시 불러도 끝
+            Exception e = error;
+            if (e instanceof IOException) throw (IOException) e;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            return null;
+        }
+
+        @Override
+        public void close() {
+            thread.interrupt();
+        }
+    }
+
+    private static void printLog(String tag, String msg) {
+        System.out.printf("[%s] [%-8s] %s%n", LocalTime.now().format(TIME_FMT), tag, msg);
+    }
+}
@@ -0,0 +1,101 @@
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * [시나리오 스트리밍 읽기] 큰 시나리오 파일(JSON 배열)을 한 단계씩 파싱합니다.
+ * 파일 전체를 문자열/JSONArray로 올리지 않으므로 파일 크기와 상관없이 메모리가 일정하고,
+ * 첫 단계는 파일을 끝까지 읽기 전에 바로 나옵니다.
+ *
+ * 검증은 읽으면서 합니다 (필수 키, time_offset_ms >= 0, 이전 단계보다 작은 offset 금지).
+ * 정렬은 하지 않으므로 큰 파일은 time_offset_ms 순으로 만들어야 합니다. (작은 파일은 ScenarioManager.parse가 정렬)
+ */
+public class ScenarioReader implements ScenarioManager.Steps {
+
+    private final Reader reader;
+    private final JSONTokener tokener;
+
+    private JSONObject peeked;
+    private int index = 0;
+    private long lastOffset = 0;
+    private boolean done = false;
+
+    /**
+     * 파일을 열고 첫 단계까지 읽어 검증합니다. (형식이 틀린 파일은 여기서 예외 -> 실행 중인 시나리오 유지)
+     */
+    public ScenarioReader(Path file) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            this.tokener = new JSONTokener(reader);
+            if (tokener.nextClean() != '[') throw new IllegalArgumentException("시나리오는 JSON 배열이어야 함");
+            if (tokener.nextClean() == ']') {
+                done = true;
+            } else {
+                tokener.back();
+                peeked = read();
+            }
+        } catch (RuntimeException e) {
+            // 읽기 오류도 JSONTokener가 JSONException으로 감싸서 던짐
+            reader.close();
+            throw e;
+        }
+    }
+
+    // 다음 단계 (끝이면 null, 형식 오류/offset 역행이면 IllegalArgumentException)
+    @Override
+    public JSONObject next() throws IOException {
+        if (peeked != null) {
+            JSONObject step = peeked;
+            peeked = null;
+            return step;
+        }
+        if (done) return null;
+        try {
+            return read();
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("step " + index + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private JSONObject read() {
+        int i = index;
+        Object value = tokener.nextValue();
+        if (!(value instanceof JSONObject)) throw new IllegalArgumentException("step " + i + ": 객체가 아님");
+        JSONObject step = (JSONObject) value;
+
+        ScenarioManager.validate(step, i);
+        long offset = step.getLong("time_offset_ms");
+        if (offset < lastOffset) {
+            throw new IllegalArgumentException("step " + i + ": time_offset_ms 역행 (" + offset + " < 이전 " + lastOffset + ")");
+        }
+        lastOffset = offset;
+        index++;
+
+        // 다음 구분자: ',' 또는 ']' (끝의 쉼표 허용)
+        char c = tokener.nextClean();
+        if (c == ',') {
+            if (tokener.nextClean() == ']') done = true;
+            else tokener.back();
+        } else if (c == ']') {
+            done = true;
+        } else {
+            throw new IllegalArgumentException("step " + i + " 뒤에 ',' 또는 ']' 필요");
+        }
+        return step;
+    }
+}
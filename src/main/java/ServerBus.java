@@ -0,0 +1,246 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * [서버 간 이벤트 버스] AGV 서버와 AMR 서버가 공유하는 발행/구독 채널입니다.
+ * 같은 JVM에 있으면 구독자별 큐로 바로 전달하고 (ServerLauncher),
+ * 다른 프로세스면 하나의 TCP 링크에 토픽을 섞어서 보냅니다.
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dbus.listen=9200           : 이 프로세스가 버스 링크를 받음
+ *   -Dbus.connect=127.0.0.1:9200 : 다른 프로세스의 버스에 접속
+ *   -Dbus.queue=10000           : 구독자별 대기 이벤트 최대 수 (넘으면 버리고 셈, 느린 구독자 때문에 메모리가 늘지 않음)
+ *
+ * 링크 프로토콜 (한 줄 = 한 이벤트): topic \t origin \t payload
+ */
+public class ServerBus {
+
+    // 구독 콜백
+    public interface Subscriber {
+        void onEvent(String topic, String payload);
+    }
+
+    // 토픽
+    public static final String TOPIC_CELL_PACKET = "cell.packet";  // 셀이 보낸 패킷 (원문 그대로)
+    public static final String TOPIC_DEVICE_SEND = "device.send";  // "<deviceId> <json>" : 상대 서버에 붙은 장비로 전송
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final long RECONNECT_DELAY_MS = 2000;
+    private static final int QUEUE_CAPACITY = Integer.getInteger("bus.queue", 10_000);
+
+    private static final ServerBus INSTANCE = new ServerBus();
+
+    // topic -> 구독 목록
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    // 다른 프로세스로 나가는 링크
+    private final List<PrintWriter> links = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean configured = new AtomicBoolean();
+
+    // 구독자 큐가 차서 버린 이벤트 수
+    private final AtomicLong dropped = new AtomicLong();
+
+    // 같은 JVM 안의 서버들은 이 인스턴스를 공유
+    public static ServerBus get() {
+        return INSTANCE;
+    }
+
+    // 프로세스 간 버스 설정이 있는지 (bus.listen / bus.connect, 셀처럼 버스를 직접 쓰지 않는 프로세스도 배치 판단에 사용)
+    public static boolean isConfigured() {
+        String connect = System.getProperty("bus.connect");
+        return Integer.getInteger("bus.listen") != null || (connect != null && !connect.isEmpty());
+    }
+
+    // 시스템 프로퍼티로 링크 설정 (같은 JVM에서 여러 서버가 불러도 1회만 적용)
+    public void configureFromSystemProperties() {
+        if (!configured.compareAndSet(false, true)) return;
+
+        Integer listenPort = Integer.getInteger("bus.listen");
+        if (listenPort != null) {
+            startDaemon("bus-accept", () -> acceptLoop(listenPort));
+        }
+
+        String connect = System.getProperty("bus.connect");
+        if (connect != null && !connect.isEmpty()) {
+            startDaemon("bus-link", () -> connectLoop(connect));
+        }
+    }
+
+    // ==========================================
+    // 1. 발행 / 구독
+    // ==========================================
+
+    /**
+     * 토픽을 구독합니다. 자기(owner)가 발행한 이벤트는 받지 않습니다.
+     */
+    public void subscribe(String owner, String topic, Subscriber subscriber) {
+        Subscription sub = new Subscription(owner, subscriber);
+        subscriptions.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(sub);
+        startDaemon("bus-" + owner + "-" + topic, sub::dispatchLoop);
+    }
+
+    /**
+     * 이벤트를 발행합니다.
+     * @return 받을 곳(다른 구독자 또는 프로세스 간 링크)이 하나라도 있으면 true
+     */
+    public boolean publish(String origin, String topic, String payload) {
+        boolean delivered = deliverLocal(origin, topic, payload);
+
+        if (!links.isEmpty()) {
+            String line = topic + "\t" + origin + "\t" + payload;
+            for (PrintWriter link : links) {
+                link.println(line);
+                delivered = true;
+            }
+        }
+        return delivered;
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    // 이 JVM 안에 토픽 구독자가 있는지 (같은 프로세스의 서버가 버스를 쓰는 중인지)
+    public boolean hasSubscribers(String topic) {
+        List<Subscription> subs = subscriptions.get(topic);
+        return subs != null && !subs.isEmpty();
+    }
+
+    private boolean deliverLocal(String origin, String topic, String payload) {
+        List<Subscription> subs = subscriptions.get(topic);
+        if (subs == null) return false;
+        boolean delivered = false;
+        for (Subscription sub : subs) {
+            if (sub.owner.equals(origin)) continue;
+            if (sub.queue.offer(new Event(topic, payload))) {
+                delivered = true;
+            } else if (dropped.getAndIncrement() == 0) {
+                log(sub.owner + " " + topic + " 구독 큐 초과 -> 이벤트 버림 (dropped()로 누적 확인)");
+            }
+        }
+        return delivered;
+    }
+
+    // ==========================================
+    // 2. 프로세스 간 링크
+    // ==========================================
+
+    private void acceptLoop(int port) {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            log("버스 링크 대기 중 (Port: " + port + ")");
+            while (true) {
+                Socket socket = serverSocket.accept();
+                startDaemon("bus-in", () -> serveLink(socket));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void connectLoop(String address) {
+        int colon = address.lastIndexOf(':');
+        String host = address.substring(0, colon);
+        int port = Integer.parseInt(address.substring(colon + 1));
+
+        while (true) {
+            try {
+                serveLink(new Socket(host, port));
+            } catch (IOException e) {
+                // 상대 버스가 아직 안 떴음
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // 링크 하나를 양방향으로 사용 (보내기: links 등록, 받기: 이 스레드)
+    private void serveLink(Socket socket) {
+        PrintWriter out = null;
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()))) {
+            out = new PrintWriter(s.getOutputStream(), true);
+            links.add(out);
+            log("버스 링크 연결 (" + s.getRemoteSocketAddress() + ")");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                int t1 = line.indexOf('\t');
+                int t2 = line.indexOf('\t', t1 + 1);
+                if (t1 < 0 || t2 < 0) continue;
+                // 링크로 받은 이벤트는 로컬 구독자에게만 전달 (재전송 X)
+                deliverLocal(line.substring(t1 + 1, t2), line.substring(0, t1), line.substring(t2 + 1));
+            }
+        } catch (IOException e) {
+            // 링크 끊김
+        } finally {
+            if (out != null && links.remove(out)) {
+                log("버스 링크 해제");
+            }
+        }
+    }
+
+    private static void startDaemon(String name, Runnable task) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void log(String msg) {
+        System.out.printf("[%s] [%-8s] %s%n", LocalTime.now().format(TIME_FMT), "BUS", msg);
+    }
+
+    // --- 구독 (구독자마다 큐 + 전달 스레드 1개) ---
+    private static class Subscription {
+        private final String owner;
+        private final Subscriber subscriber;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        Subscription(String owner, Subscriber subscriber) {
+            this.owner = owner;
+            this.subscriber = subscriber;
+        }
+
+        void dispatchLoop() {
+            try {
+                while (true) {
+                    Event e = queue.take();
+                    try {
+                        subscriber.onEvent(e.topic, e.payload);
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Event {
+        private final String topic;
+        private final String payload;
+
+        Event(String topic, String payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import org.json.JSONObject;
+
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * [서버 처리 로직] AGVServer / AMRServer가 패킷 1개, 시나리오 단계 1개를 처리하는 부분을 소켓/스레드 없이 담은 인스턴스.
+ * 시각은 FactoryClock에서, 밖으로 나가는 것(장비 전송, 대시보드 중계, 상대 서버 공유)은 Network로만 내보냅니다.
+ *   - AGVServer, AMRServer : 실제 시계 + 소켓/클러스터/버스 (연결 관리, 세션 재개, 수신 제어는 서버에 남음)
+ *   - FactorySimulation    : 가상 시계 + 메모리 채널 -> 실제 서버와 같은 코드로 상태 갱신 / 명령 재전송 / 시나리오 실행
+ */
+public class ServerCore {
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    // 서버 밖으로 나가는 경로
+    public interface Network {
+        // 장비에게 전송 (받을 곳이 없으면 false)
+        boolean sendToDevice(String deviceId, String jsonStr);
+
+        // 대시보드 중계 (이 서버가 받은 패킷 / 시나리오 단계, 클러스터의 다른 노드 포함)
+        void relay(String jsonStr, JSONObject root);
+
+        // 이 노드의 대시보드로만 중계 (상대 서버에서 넘어온 셀 패킷)
+        void publishLocal(String jsonStr, JSONObject root);
+
+        // 셀 패킷을 상대 서버와 공유 (ServerBus.TOPIC_CELL_PACKET)
+        void shareCellPacket(String jsonStr);
+    }
+
+    private final String serverId;
+    private final String taskIdFormat;
+    private final FactoryClock clock;
+    private final DeviceRegistry registry;
+    private final PositionStore positions;
+    private final KpiEngine kpi;
+    private final PriorityLanes lanes;
+    private final Network network;
+
+    // 최근 packet_id 캐시 (재전송/중복 패킷 제거)
+    private final PacketIdCache dedupe = PacketIdCache.fromSystemProperties();
+
+    // ACK 대기 중인 COMMAND (task_id -> 재전송 타이머)
+    private final PendingCommands commands;
+
+    // 시나리오에 task_id가 없을 때 붙일 번호 + 기동 시각 (서버를 재시작해도 이전 실행의 task_id와 겹치지 않음)
+    private final AtomicInteger taskSeq = new AtomicInteger();
+    private final String runId;
+    private final AtomicLong seqIssues = new AtomicLong();
+    private volatile boolean logging = true;
+
+    /**
+     * @param taskIdFormat 시나리오 단계에 task_id가 없을 때 쓸 형식 (예: "TASK_%03d", 뒤에 기동 시각이 붙음)
+     * @param positions    null이면 위치 이력 없음
+     * @param kpi          null이면 KPI 집계 없음
+     * @param lanes        null이면 로그/중계를 호출한 스레드에서 바로 실행
+     */
+    public ServerCore(String serverId, String taskIdFormat, FactoryClock clock, DeviceRegistry registry,
+                      PositionStore positions, KpiEngine kpi, PriorityLanes lanes, Network network) {
+        this.serverId = serverId;
+        this.taskIdFormat = taskIdFormat;
+        this.clock = clock;
+        this.registry = registry;
+        this.positions = positions;
+        this.kpi = kpi;
+        this.lanes = lanes;
+        this.network = network;
+        this.runId = Long.toString(clock.now(), 36);
+        this.commands = new PendingCommands(network::sendToDevice, new PendingCommands.Listener() {
+            @Override
+            public void onCompleted(String taskId, String deviceId, long rttMs, int retries) {
+                printLog("CMD", taskId + " 완료 (" + deviceId + ", RTT " + rttMs + "ms, 재전송 " + retries + "회)");
+            }
+
+            @Override
+            public void onFailed(String taskId, String deviceId, int attempts) {
+                printLog("ERROR", taskId + " 전달 실패 (" + deviceId + ", " + attempts + "회 시도, ACK 없음)");
+            }
+        }, clock);
+    }
+
+    // 대규모 시뮬레이션에서 서버 로그 끄기
+    public void setLogging(boolean logging) {
+        this.logging = logging;
+    }
+
+    public PendingCommands commands() {
+        return commands;
+    }
+
+    // 순번 누락 + 순서 역전 누적 수
+    public long seqIssues() {
+        return seqIssues.get();
+    }
+
+    // ==========================================
+    // 1. 장비 패킷
+    // ==========================================
+
+    // 중복 패킷 여부 (packet_id 기준, 없으면 검사 생략)
+    public boolean isDuplicate(JSONObject header) {
+        String packetId = header.optString("packet_id", null);
+        return packetId != null && dedupe.isDuplicate(packetId, clock.now());
+    }
+
+    /**
+     * 이 서버에 접속한 장비의 패킷 (중복 검사 + 로그인 처리 뒤)
+     * 순번 검사 -> 상태 갱신 -> ACK면 명령 완료 -> 셀 패킷 공유 -> 로그 + 대시보드 중계(우선순위 레인)
+     */
+    public void onDevicePacket(int slot, String jsonStr, JSONObject root) {
+        JSONObject header = root.getJSONObject("header");
+        String sender = header.getString("sender_id");
+        String receiver = header.getString("receiver_id");
+        String type = header.getString("type");
+        String desc = header.optString("log_text", "");
+
+        checkSequence(slot, sender, header);
+        updateDeviceState(slot, type, root);
+
+        // ACK -> 대기 중인 COMMAND 완료 처리
+        if (type.equals("ACK")) {
+            JSONObject body = root.optJSONObject("body");
+            if (body != null && body.has("task_id")) {
+                commands.complete(body.getString("task_id"));
+            }
+        }
+
+        // 셀 패킷은 상대 서버에도 공유 (셀은 한 서버에만 접속)
+        if (sender.startsWith("CELL")) {
+            network.shareCellPacket(jsonStr);
+        }
+
+        // 위치 패킷이 밀려 있어도 COMMAND/ACK 먼저
+        dispatch(type, () -> {
+            printPrettyLog(type, sender, receiver, desc);
+            network.relay(jsonStr, root);
+        });
+    }
+
+    // 상대 서버에 접속한 셀의 패킷 (shareCellPacket으로 넘어온 것)
+    public void onSharedCellPacket(String jsonStr) {
+        JSONObject root = new JSONObject(jsonStr);
+        JSONObject header = root.getJSONObject("header");
+        String sender = header.getString("sender_id");
+        String type = header.getString("type");
+
+        int slot = registry.register(sender);
+        // 이 서버에도 직접 접속해 있으면 (이중 연결 모드) 중복 처리하지 않음
+        if (registry.isConnected(slot)) return;
+        if (isDuplicate(header)) return;
+        checkSequence(slot, sender, header);
+
+        updateDeviceState(slot, type, root);
+        // 상태/대시보드만 반영 (클러스터 방송은 셀이 접속한 서버가 이미 함, 공용 게이트웨이는 packet_id로 중복 제거)
+        dispatch(type, () -> {
+            printPrettyLog(type, sender, header.optString("receiver_id", serverId), header.optString("log_text", ""));
+            network.publishLocal(jsonStr, root);
+        });
+    }
+
+    // 송신자 순번 검사 (누락/순서 역전 로그)
+    private void checkSequence(int slot, String deviceId, JSONObject header) {
+        long seq = header.optLong("seq", 0);
+        if (seq <= 0) return;
+
+        int result = registry.checkSequence(slot, seq);
+        if (result == DeviceRegistry.SEQ_GAP) {
+            seqIssues.incrementAndGet();
+            printLog("SEQ", deviceId + " 순번 누락 감지 (seq=" + seq + ", 누적 누락 " + registry.seqMissing(slot) + ")");
+        } else if (result == DeviceRegistry.SEQ_LATE) {
+            seqIssues.incrementAndGet();
+            printLog("SEQ", deviceId + " 순서 역전 패킷 (seq=" + seq + ", 최신 " + registry.lastSeq(slot) + ")");
+        }
+    }
+
+    // 장비 상태 갱신 (슬롯 기반)
+    private void updateDeviceState(int slot, String type, JSONObject root) {
+        long now = clock.now();
+        registry.touch(slot, now);
+
+        JSONObject body = root.optJSONObject("body");
+        if (kpi != null) kpi.observe(slot, type, body, now);
+        if (body == null) return;
+
+        if (type.equals("STATUS")) {
+            registry.updateStatus(slot, body.optString("mode"), body.optBoolean("is_occupied"));
+        } else if (type.equals("LOCATION")) {
+            JSONObject coordinates = body.optJSONObject("coordinates");
+            JSONObject navi = body.optJSONObject("navigation");
+            registry.updateLocation(slot,
+                    coordinates != null ? coordinates.optString("last_qr_scanned", null) : null,
+                    navi != null ? navi.optInt("current_segment_index") : 0);
+            if (positions != null) {
+                positions.append(slot, now, registry.lastQr(slot), registry.segmentIndex(slot));
+            }
+        }
+    }
+
+    // ==========================================
+    // 2. 서버 발신 (시나리오 단계 / 명령)
+    // ==========================================
+
+    // 시나리오 단계 1개 (ScenarioManager 스레드 또는 시뮬레이션 이벤트에서 호출)
+    public void onScenarioStep(JSONObject step) {
+        // 1. JSON에서 정보 추출
+        String sender = step.getString("sender_id");
+        String receiver = step.getString("receiver_id");
+        String type = step.getString("message_type");
+        String command = step.getString("command");
+        String desc = step.getString("description"); // 채팅형 메시지
+        // task_id가 없으면 새로 발급 (ACK 매칭 키라서 명령마다 달라야 함)
+        String taskId = step.has("task_id") ? step.getString("task_id")
+                : String.format(taskIdFormat, taskSeq.incrementAndGet()) + "_" + runId;
+
+        // 2. 전송할 패킷 생성 (프로토콜 표준화)
+        JSONObject packet = new JSONObject();
+        JSONObject header = new JSONObject();
+        header.put("packet_id", UUID.randomUUID().toString());
+        // 표시용 단계(장비가 보내는 기대값)는 장비 순번을 쓰지 않음 (같은 JVM의 그 장비 순번에 구멍이 생김)
+        if (sender.contains("SERVER")) header.put("seq", JsonPacketBuilder.nextSeq(sender));
+        header.put("type", type);
+        header.put("sender_id", sender);
+        header.put("receiver_id", receiver);
+        header.put("timestamp", clock.localTime().format(TIME_FMT));
+        header.put("log_text", desc); // UI 표시용 텍스트
+        packet.put("header", header);
+
+        JSONObject body = new JSONObject();
+        body.put("task_id", taskId);
+        body.put("command", command);
+        if (step.has("payload")) {
+            body.put("payload", step.getJSONObject("payload"));
+        }
+        packet.put("body", body);
+
+        String jsonStr = packet.toString();
+
+        // 3. 로그 + 대시보드 중계 -> 우선순위 레인
+        dispatch(type, () -> {
+            printPrettyLog(type, sender, receiver, desc);
+            network.relay(jsonStr, packet);
+        });
+
+        // 4. 시나리오 상 '보내는 사람'이 'SERVER'인 경우에만 실제로 전송
+        // (Robot이 보내는 메시지는 시나리오상 '기대값'이거나 '시뮬레이션'이므로 서버가 쏘지 않음)
+        if (sender.contains("SERVER")) {
+            send(type, taskId, receiver, jsonStr);
+        }
+    }
+
+    /**
+     * 서버 발신 패킷 전송. COMMAND는 ACK가 올 때까지 재전송 (로봇이 안 붙어있어도 대기 목록에 남아 접속 후 전달됨)
+     * 셀은 ACK를 보내지 않으므로 로봇에게 가는 COMMAND만 재전송 대상
+     */
+    public void send(String type, String taskId, String receiver, String jsonStr) {
+        if (type.equals("COMMAND") && !receiver.startsWith("CELL")) {
+            commands.send(taskId, receiver, jsonStr);
+        } else {
+            network.sendToDevice(receiver, jsonStr);
+        }
+    }
+
+    // ==========================================
+    // 3. 레인 / 로그
+    // ==========================================
+
+    // 로그 + 대시보드 중계를 타입별 레인에 넣음 (레인 미사용 시 바로 실행)
+    private void dispatch(String type, Runnable work) {
+        if (lanes != null) {
+            lanes.submit(PriorityLanes.laneOf(type), work);
+        } else {
+            work.run();
+        }
+    }
+
+    // 포맷: [시간] [TYPE   ] Sender -> Receiver : 메시지 내용
+    private void printPrettyLog(String type, String sender, String receiver, String text) {
+        if (!logging) return;
+        String time = clock.localTime().format(TIME_FMT);
+        String flow = String.format("%s -> %s", sender, receiver);
+        System.out.printf("[%s] [%-8s] %-25s : %s%n", time, type, flow, text);
+    }
+
+    private void printLog(String tag, String msg) {
+        if (!logging) return;
+        System.out.printf("[%s] [%-8s] %s%n", clock.localTime().format(TIME_FMT), tag, msg);
+    }
+}
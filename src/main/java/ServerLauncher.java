@@ -0,0 +1,27 @@
+public class ServerLauncher {
+    public static void main(String[] args) {
+        System.out.println(">> AGV/AMR 관제 서버를 한 프로세스에서 가동합니다...");
+
+        // 두 서버가 공용 대시보드 게이트웨이(FactoryWebSocketServer) 1개로 방송 -> 서버별 포트 대신 9090 (-Dgateway.port)
+        if (System.getProperty("gateway.port") == null) System.setProperty("gateway.port", Integer.toString(FactoryWebSocketServer.DEFAULT_PORT));
+
+        // -Dlauncher.devices=true : 셀/AGV/AMR도 같은 JVM에서 실행 (전송 계층 기본값 memory, -Dtransport=tcp로 비교 가능)
+        boolean withDevices = Boolean.getBoolean("launcher.devices");
+        if (withDevices && System.getProperty("transport") == null) System.setProperty("transport", "memory");
+
+        // 같은 JVM에서 뜬 두 서버는 ServerBus를 공유 -> 셀은 AGV 서버에 한 번만 접속하면 됨
+        new Thread(() -> AGVServer.main(args), "agv-server").start();
+        new Thread(() -> AMRServer.main(args), "amr-server").start();
+
+        if (withDevices) {
+            // 서버 접속 대기 시작까지 기다린 뒤 장비 기동
+            try { Thread.sleep(3000); } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            new Thread(() -> FactoryLauncher.main(args), "cell-launcher").start();
+            new Thread(() -> AGVLauncher.main(args), "agv-launcher").start();
+            new Thread(() -> AMRLauncher.main(args), "amr-launcher").start();
+        }
+    }
+}
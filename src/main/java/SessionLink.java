@@ -0,0 +1,260 @@
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * [재접속 + 세션 재개] 장비(AGV/AMR/셀) -> 서버 연결을 끊겨도 계속 유지합니다.
+ *
+ * 1. 처음 접속: onLogin으로 평소처럼 로그인 (STATUS), 서버가 SESSION 패킷으로 세션 토큰 발급
+ * 2. 끊김: 지터 백오프(0 ~ min(최대, 기본 x 2^시도)) 후 재접속 -> 대규모 장비가 한꺼번에 붙지 않음
+ * 3. 재접속: 토큰 + 마지막 순번을 RESUME으로 보냄 -> 서버가 같은 슬롯에 붙이고 미완료 명령을 바로 재전송,
+ *    서버가 받은 마지막 순번 뒤의 패킷(끊긴 동안 보낸 것 포함)만 다시 보냄
+ * 4. 서버 재시작 등으로 세션이 없으면 (재개 거절) 1번부터 다시
+ *
+ * 무선 구간이 조용히 끊기면 RST가 오지 않아 읽기가 끝나지 않으므로 하트비트로 확인합니다.
+ * heartbeatMs 동안 서버로 보낸 게 없거나 (서버는 받은 것 기준으로 정리) 서버에서 받은 게 없으면 PING을 보내고 (서버는 PONG 응답),
+ * 3 x heartbeatMs 동안 아무것도 못 받으면 연결을 닫고 재접속합니다. (서버는 -Dsession.idleTimeoutMs를 켰을 때만 정리)
+ *
+ * send()는 연결과 상관없이 항상 쓸 수 있습니다. (끊긴 동안의 패킷은 최근 N개만 보관)
+ * 설정: -Dreconnect.baseMs=100 -Dreconnect.maxMs=5000 -Dsession.replay=64
+ *       -Dsession.heartbeatMs=5000 (0 = 하트비트 사용 안 함)
+ */
+public class SessionLink {
+
+    private static final long BASE_MS = Long.getLong("reconnect.baseMs", 100);
+    private static final long MAX_MS = Long.getLong("reconnect.maxMs", 5000);
+    private static final int REPLAY = Integer.getInteger("session.replay", 64);
+    private static final long HEARTBEAT_MS = Long.getLong("session.heartbeatMs", 5000);
+    private static final int DEAD_AFTER_BEATS = 3;
+
+    // 모든 링크의 하트비트를 스레드 1개로 처리 (장비 수천 대를 한 JVM에서 띄워도 스레드가 늘지 않음)
+    private static final ScheduledThreadPoolExecutor HEARTBEAT = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "session-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final String deviceId;
+    private final String host;
+    private final int port;
+    private final String name;
+    private final boolean async;
+
+    // 보낸 패킷 (순번 있는 것만, 재개 시 서버가 못 받은 것 재전송)
+    private final ArrayDeque<Sent> replay = new ArrayDeque<>();
+    // 현재 연결의 송신 경로 (로그인/재개 전에는 null -> 보관만)
+    private Consumer<String> current;
+    private volatile String token;
+    private volatile boolean running = true;
+    private long droppedAtMs;
+
+    // 하트비트용: 지금 연결 / 그 송신 경로 / 마지막으로 서버에서 받은 시각 / 마지막으로 서버로 보낸 시각
+    private volatile Transport.Connection live;
+    private volatile Consumer<String> liveOut;
+    private volatile long lastReceivedMs;
+    private volatile long lastSentMs;
+
+    private static class Sent {
+        final long seq;
+        final String packet;
+
+        Sent(long seq, String packet) {
+            this.seq = seq;
+            this.packet = packet;
+        }
+    }
+
+    /**
+     * @param name  로그/송신 스레드 이름 (예: "AGV_01", "CELL_01-AGV_SERVER")
+     * @param async true면 송신 전용 스레드 사용 (Transport.Connection.asyncSender)
+     */
+    public SessionLink(String deviceId, String host, int port, String name, boolean async) {
+        this.deviceId = deviceId;
+        this.host = host;
+        this.port = port;
+        this.name = name;
+        this.async = async;
+    }
+
+    // 서버로 송신 (연결 중이 아니면 보관했다가 세션 재개 때 전송)
+    public synchronized void send(String packet) {
+        long seq = seqOf(packet);
+        if (seq > 0) {
+            if (replay.size() >= REPLAY) replay.pollFirst();
+            replay.addLast(new Sent(seq, packet));
+        }
+        if (current != null) current.accept(packet);
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * 연결 유지 루프 (stop() 전까지 반환하지 않음)
+     * @param onLogin   새 세션 (처음 접속 / 재개 거절) -> 로그인 패킷 전송, 인자는 send()
+     * @param onMessage 서버 메시지 (SESSION / PONG 제외)
+     */
+    public void run(Consumer<Consumer<String>> onLogin, Consumer<String> onMessage) {
+        ScheduledFuture<?> beat = (HEARTBEAT_MS > 0)
+                ? HEARTBEAT.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_MS, HEARTBEAT_MS, TimeUnit.MILLISECONDS)
+                : null;
+        try {
+            loop(onLogin, onMessage);
+        } finally {
+            if (beat != null) beat.cancel(false);
+        }
+    }
+
+    private void loop(Consumer<Consumer<String>> onLogin, Consumer<String> onMessage) {
+        int attempt = 0;
+        while (running) {
+            Transport.Connection conn = null;
+            String reason = "연결 종료";
+            try {
+                conn = Transport.get().connect(host, port);
+                Consumer<String> sender = async ? conn.asyncSender(name) : conn::send;
+                // 보낸 시각 기록 (명령만 받고 보낼 게 없는 장비도 서버가 끊기 전에 PING)
+                Consumer<String> out = packet -> {
+                    lastSentMs = System.currentTimeMillis();
+                    sender.accept(packet);
+                };
+                lastReceivedMs = System.currentTimeMillis();
+                lastSentMs = lastReceivedMs;
+                liveOut = out;
+                live = conn;
+
+                if (token == null) {
+                    login(out, onLogin);
+                } else {
+                    out.accept(JsonPacketBuilder.createResumePacket(deviceId, token, JsonPacketBuilder.lastSeq(deviceId)));
+                }
+
+                String line;
+                while ((line = conn.readLine()) != null) {
+                    lastReceivedMs = System.currentTimeMillis();
+                    String type = AdmissionControl.peekType(line);
+                    if ("SESSION".equals(type)) {
+                        onSession(line, out, onLogin);
+                        attempt = 0;
+                    } else if (!"PONG".equals(type)) {
+                        onMessage.accept(line);
+                    }
+                }
+            } catch (IOException e) {
+                reason = e.getMessage();
+            } finally {
+                live = null;
+                liveOut = null;
+                synchronized (this) {
+                    if (current != null) droppedAtMs = System.currentTimeMillis();
+                    current = null;
+                }
+                if (conn != null) conn.close();
+            }
+            if (!running) break;
+
+            long delay = backoff(attempt++);
+            logError("!! [" + name + "] " + reason + " -> " + delay + "ms 후 재접속 (" + attempt + "회째)");
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 오래 못 보냈거나 못 받았으면 PING, 너무 오래 못 받으면 반쯤 열린 연결로 보고 닫음 (-> 읽기 루프가 끝나고 재접속)
+    private void heartbeat() {
+        Transport.Connection conn = live;
+        Consumer<String> out = liveOut;
+        if (conn == null || out == null) return;
+
+        long now = System.currentTimeMillis();
+        long idle = now - lastReceivedMs;
+        if (idle >= HEARTBEAT_MS * DEAD_AFTER_BEATS) {
+            logError("!! [" + name + "] 서버 응답 없음 (" + idle + "ms) -> 연결 종료");
+            conn.close();
+        } else if (idle >= HEARTBEAT_MS || now - lastSentMs >= HEARTBEAT_MS) {
+            out.accept(JsonPacketBuilder.createPingPacket(deviceId));
+        }
+    }
+
+    // 지터 백오프: 0 ~ min(최대, 기본 x 2^시도) 균등 분포 (동시에 끊긴 장비들의 재접속을 흩어 놓음)
+    static long backoff(int attempt) {
+        long cap = Math.min(MAX_MS, BASE_MS << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    // 새 세션: 이전 보관 패킷은 버리고 처음부터 로그인
+    private void login(Consumer<String> out, Consumer<Consumer<String>> onLogin) {
+        synchronized (this) {
+            replay.clear();
+            current = out;
+        }
+        onLogin.accept(this::send);
+    }
+
+    private void onSession(String line, Consumer<String> out, Consumer<Consumer<String>> onLogin) {
+        JSONObject body = new JSONObject(line).optJSONObject("body");
+        if (body == null) return;
+        String issued = body.optString("session_token", "");
+
+        if (body.optBoolean("resumed")) {
+            int replayed = resume(out, body.optLong("last_seq"));
+            long gapMs = System.currentTimeMillis() - droppedAtMs;
+            log(">> [" + name + "] 세션 재개 (공백 " + gapMs + "ms, 재전송 " + replayed + "건)");
+        } else if (!issued.isEmpty()) {
+            token = issued;
+        } else {
+            // 서버가 세션을 모름 (재시작 등) -> 다시 로그인, 서버가 새 토큰 발급
+            log(">> [" + name + "] 세션 재개 거절 -> 다시 로그인");
+            token = null;
+            login(out, onLogin);
+        }
+    }
+
+    // 서버가 받은 순번 이후 패킷만 순서대로 다시 보내고 송신 재개
+    private synchronized int resume(Consumer<String> out, long lastSeq) {
+        replay.removeIf(s -> s.seq <= lastSeq);
+        for (Sent s : replay) out.accept(s.packet);
+        current = out;
+        return replay.size();
+    }
+
+    // 헤더 seq 값 (없으면 0, JSON 파싱 없이 숫자만 읽음)
+    static long seqOf(String packet) {
+        int i = packet.indexOf("\"seq\"");
+        if (i < 0) return 0;
+        i = packet.indexOf(':', i + 5);
+        if (i < 0) return 0;
+        i++;
+        while (i < packet.length() && packet.charAt(i) == ' ') i++;
+        long seq = 0;
+        for (; i < packet.length(); i++) {
+            char c = packet.charAt(i);
+            if (c < '0' || c > '9') break;
+            seq = seq * 10 + (c - '0');
+        }
+        return seq;
+    }
+
+    private static void log(String msg) {
+        System.out.println("[" + LocalTime.now().format(TIME_FMT) + "] " + msg);
+    }
+
+    private static void logError(String msg) {
+        System.err.println("[" + LocalTime.now().format(TIME_FMT) + "] " + msg);
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * [로봇용 작업 장부] 서버가 ACK를 못 받아 같은 COMMAND(task_id)를 재전송해도 두 번 실행하지 않도록 기록합니다.
+ * - 진행 중인 작업 재수신 -> 무시
+ * - 이미 끝난 작업 재수신 -> 저장해둔 완료 ACK를 다시 보냄
+ * 최근 작업만 기억합니다 (기본 256개).
+ */
+public class TaskLedger {
+
+    private static final String IN_PROGRESS = "";
+
+    private final Map<String, String> tasks;
+
+    public TaskLedger() {
+        this(256);
+    }
+
+    public TaskLedger(int maxTasks) {
+        this.tasks = new LinkedHashMap<String, String>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxTasks;
+            }
+        };
+    }
+
+    /**
+     * 새 작업이면 진행 중으로 기록하고 true.
+     * 이미 본 작업이면 false (완료된 작업이면 completedAck에 ACK 패킷을 담아줌)
+     */
+    public synchronized boolean begin(String taskId, String[] completedAck) {
+        String ack = tasks.get(taskId);
+        if (ack == null) {
+            tasks.put(taskId, IN_PROGRESS);
+            return true;
+        }
+        completedAck[0] = ack.isEmpty() ? null : ack;
+        return false;
+    }
+
+    // 새 세션 로그인 (서버 재시작 등) -> 이전 서버의 task_id와 겹칠 수 있으므로 모두 잊음
+    public synchronized void clear() {
+        tasks.clear();
+    }
+
+    // 작업 완료 -> 재전송 대비 ACK 패킷 보관
+    public synchronized void complete(String taskId, String ackPacket) {
+        tasks.put(taskId, ackPacket);
+    }
+}
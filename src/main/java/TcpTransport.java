@@ -0,0 +1,94 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.function.Consumer;
+
+/**
+ * [전송 계층 - TCP] 기존 동작 그대로 소켓 + 줄 단위 읽기/쓰기 (PrintWriter autoflush).
+ */
+public class TcpTransport implements Transport {
+
+    public static final TcpTransport INSTANCE = new TcpTransport();
+
+    @Override
+    public Connection connect(String host, int port) throws IOException {
+        return new TcpConnection(new Socket(host, port));
+    }
+
+    @Override
+    public Listener listen(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port);
+        return new Listener() {
+            @Override
+            public Connection accept() throws IOException {
+                return new TcpConnection(serverSocket.accept());
+            }
+
+            @Override
+            public void close() throws IOException {
+                serverSocket.close();
+            }
+        };
+    }
+
+    @Override
+    public String name() {
+        return "tcp";
+    }
+
+    static class TcpConnection implements Connection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+        private volatile OutboundLink link;
+
+        TcpConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            this.out = new PrintWriter(socket.getOutputStream(), true);
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            return in.readLine();
+        }
+
+        @Override
+        public void send(String line) {
+            out.println(line);
+        }
+
+        // 전용 송신 스레드 (연결당 1개, 다시 불러도 같은 링크, 연결을 닫을 때 같이 정리)
+        @Override
+        public synchronized Consumer<String> asyncSender(String name) {
+            OutboundLink current = link;
+            if (current == null) {
+                try {
+                    current = new OutboundLink(name, socket.getOutputStream());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                link = current;
+            }
+            return current::send;
+        }
+
+        @Override
+        public void close() {
+            if (link != null) link.close();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public String remote() {
+            return String.valueOf(socket.getInetAddress());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * [전송 계층] 장비(AGV/AMR/셀) <-> 서버 연결을 한 줄(패킷) 단위로 추상화합니다.
+ *   - tcp    : 기존 소켓 (TcpTransport)
+ *   - memory : 같은 JVM 안에서 큐로 패킷 문자열을 그대로 전달 (MemoryTransport, 바이트 인코딩/시스템 콜 없음)
+ *              JSON 문자열 생성(보내는 쪽)과 파싱(받는 쪽)은 tcp와 똑같이 함
+ *
+ * 설정 (시스템 프로퍼티):
+ *   -Dtransport=tcp | memory   (memory는 서버와 장비가 한 프로세스에 있을 때만 사용, ServerLauncher 참고)
+ */
+public interface Transport {
+
+    // 연결 1개 (패킷 = 줄바꿈 없는 JSON 한 줄)
+    interface Connection {
+        // 다음 패킷 (연결이 끊기면 null)
+        String readLine() throws IOException;
+
+        // 패킷 전송 (끊긴 연결이면 조용히 버림, PrintWriter와 같은 동작)
+        void send(String line);
+
+        void close();
+
+        // 로그용 상대 주소
+        String remote();
+
+        // 호출한 스레드가 절대 막히지 않는 송신 경로 (TCP는 OutboundLink, 메모리는 큐가 차 있으면 버림)
+        // 기본 구현은 send 그대로이므로 막히지 않는 전송 계층만 그대로 둘 것
+        default Consumer<String> asyncSender(String name) {
+            return this::send;
+        }
+    }
+
+    // 접속 대기
+    interface Listener extends Closeable {
+        Connection accept() throws IOException;
+    }
+
+    Connection connect(String host, int port) throws IOException;
+
+    Listener listen(int port) throws IOException;
+
+    String name();
+
+    // -Dtransport 설정에 따른 전송 계층 (기본 tcp)
+    static Transport get() {
+        return "memory".equalsIgnoreCase(System.getProperty("transport")) ? MemoryTransport.INSTANCE : TcpTransport.INSTANCE;
+    }
+}
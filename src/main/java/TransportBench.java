@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * [측정] 전송 계층 tcp / memory 비교 (같은 JVM 안의 장비 -> 서버).
+ * 실행: TransportBench [장비 수 (기본 4)] [장비당 패킷 (기본 100000)] [왕복 횟수 (기본 20000)]
+ *       -Dbench.port=9490
+ *
+ * 1. 처리량 : 장비 N대가 LOCATION 패킷을 연달아 보내고 서버 쪽 수신 스레드가 줄 수를 셈
+ * 2. 왕복   : 장비 1대가 보내고 서버가 그대로 돌려준 응답을 받을 때까지 시간 (p50 / p99)
+ * 파싱/중계 비용은 빼고 전송 계층만 잽니다. (실제 서버 처리 비용은 ReplayBench 참고)
+ */
+public class TransportBench {
+
+    public static void main(String[] args) throws Exception {
+        int devices = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int packets = (args.length > 1) ? Integer.parseInt(args[1]) : 100_000;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 20_000;
+        int port = Integer.getInteger("bench.port", 9490);
+
+        String packet = JsonPacketBuilder.createLocationPacket("AGV_01", "QR_0012", "QR_0040", 3);
+        System.out.printf(">> 장비 %d대 x %,d패킷 (%d자), 왕복 %,d회%n", devices, packets, packet.length(), rounds);
+
+        for (Transport transport : new Transport[]{TcpTransport.INSTANCE, MemoryTransport.INSTANCE}) {
+            // 같은 조건을 위해 워밍업 1회 후 측정
+            throughput(transport, port, devices, packets / 10, packet);
+            double perSec = throughput(transport, port + 1, devices, packets, packet);
+            long[] rtt = pingPong(transport, port + 2, rounds, packet);
+            System.out.printf("   %-6s : 처리량 %,12.0f 패킷/초 | 왕복 p50 %6.1f us, p99 %7.1f us%n",
+                    transport.name(), perSec, rtt[0] / 1e3, rtt[1] / 1e3);
+        }
+        System.exit(0);
+    }
+
+    // 장비 N대 동시 송신 -> 서버 수신 완료까지 초당 패킷 수
+    private static double throughput(Transport transport, int port, int devices, int packets, String packet) throws Exception {
+        AtomicLong received = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(devices);
+
+        try (Transport.Listener listener = transport.listen(port)) {
+            Thread acceptor = new Thread(() -> {
+                for (int i = 0; i < devices; i++) {
+                    try {
+                        Transport.Connection conn = listener.accept();
+                        new Thread(() -> {
+                            try {
+                                long n = 0;
+                                while (conn.readLine() != null) {
+                                    if (++n == packets) break;
+                                }
+                                received.addAndGet(n);
+                            } catch (IOException e) {
+                                // 끊김
+                            } finally {
+                                conn.close();
+                                done.countDown();
+                            }
+                        }, "bench-server-" + i).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }, "bench-acceptor");
+            acceptor.start();
+
+            Transport.Connection[] clients = new Transport.Connection[devices];
+            for (int i = 0; i < devices; i++) clients[i] = transport.connect("127.0.0.1", port);
+
+            long t0 = System.nanoTime();
+            Thread[] senders = new Thread[devices];
+            for (int i = 0; i < devices; i++) {
+                Transport.Connection conn = clients[i];
+                senders[i] = new Thread(() -> {
+                    for (int n = 0; n < packets; n++) conn.send(packet);
+                }, "bench-device-" + i);
+                senders[i].start();
+            }
+            done.await();
+            long elapsed = System.nanoTime() - t0;
+            for (Transport.Connection conn : clients) conn.close();
+            return received.get() * 1e9 / elapsed;
+        }
+    }
+
+    // 보내고 -> 서버가 같은 패킷을 돌려줄 때까지 (ns, [p50, p99])
+    private static long[] pingPong(Transport transport, int port, int rounds, String packet) throws Exception {
+        try (Transport.Listener listener = transport.listen(port)) {
+            Thread echo = new Thread(() -> {
+                try {
+                    Transport.Connection conn = listener.accept();
+                    String line;
+                    while ((line = conn.readLine()) != null) conn.send(line);
+                    conn.close();
+                } catch (IOException e) {
+                    // 끊김
+                }
+            }, "bench-echo");
+            echo.start();
+
+            Transport.Connection conn = transport.connect("127.0.0.1", port);
+            long[] samples = new long[rounds];
+            for (int i = -rounds / 10; i < rounds; i++) { // 앞 10%는 워밍업
+                long t0 = System.nanoTime();
+                conn.send(packet);
+                if (conn.readLine() == null) throw new IOException("echo closed");
+                if (i >= 0) samples[i] = System.nanoTime() - t0;
+            }
+            conn.close();
+            Arrays.sort(samples);
+            return new long[]{samples[rounds / 2], samples[(int) (rounds * 0.99)]};
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.Framedata;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * [웹소켓 압축] 대시보드 웹소켓에 permessage-deflate를 서버별로 켜고 끕니다.
+ * 브라우저가 압축을 요청하지 않으면 자동으로 압축 없이 연결됩니다.
+ *
+ * 설정 (시스템 프로퍼티, name = agv / amr / factory):
+ *   -Dws.<name>.deflate=true                            : 압축 사용 (기본 false)
+ *   -Dws.<name>.deflate.threshold=256                   : 이 크기(bytes) 미만 메시지는 압축 안 함
+ *   -Dws.<name>.deflate.level=6                         : 압축 레벨 (1=빠름 ~ 9=작게)
+ *   -Dws.<name>.deflate.serverNoContextTakeover=false   : true면 메시지마다 사전 초기화 (연결당 메모리↓, 압축률↓)
+ *   -Dws.<name>.deflate.clientNoContextTakeover=false
+ */
+public class WsCompression {
+
+    private static final int DEFAULT_THRESHOLD = 256;
+    private static final int DEFAULT_LEVEL = 6;
+
+    // 서버 생성자에 넘길 Draft 목록 (압축 미사용이면 기본 Draft)
+    public static List<Draft> drafts(String name) {
+        String prefix = "ws." + name + ".deflate";
+        if (!Boolean.getBoolean(prefix)) {
+            return Collections.singletonList(new Draft_6455());
+        }
+
+        ConfiguredDeflate deflate = new ConfiguredDeflate(
+                Integer.getInteger(prefix + ".threshold", DEFAULT_THRESHOLD),
+                Integer.getInteger(prefix + ".level", DEFAULT_LEVEL),
+                Boolean.getBoolean(prefix + ".serverNoContextTakeover"),
+                Boolean.getBoolean(prefix + ".clientNoContextTakeover"));
+
+        System.out.println(">> [WS] " + name + " permessage-deflate 사용 (" + deflate.describe() + ")");
+        return Collections.singletonList(new Draft_6455(Collections.<IExtension>singletonList(deflate)));
+    }
+
+    /**
+     * 라이브러리(1.5.4) 기본 구현 보정:
+     * - copyInstance()가 설정(threshold 등)을 버리고 새로 만듦 -> 연결마다 설정을 그대로 복사
+     * - 서버 응답에 server_no_context_takeover를 항상 붙임 -> 실제 설정대로 응답
+     *   (사전을 유지하면서 no_context_takeover라고 알리면 브라우저가 압축 해제에 실패함)
+     * - 메시지마다 Deflater를 새로 만들 때 압축 레벨이 기본값으로 돌아감 -> 레벨 다시 적용
+     */
+    static class ConfiguredDeflate extends PerMessageDeflateExtension {
+        private final int threshold;
+        private final int level;
+        private final boolean serverNoContextTakeover;
+        private final boolean clientNoContextTakeover;
+
+        ConfiguredDeflate(int threshold, int level, boolean serverNoContextTakeover, boolean clientNoContextTakeover) {
+            this.threshold = threshold;
+            this.level = level;
+            this.serverNoContextTakeover = serverNoContextTakeover;
+            this.clientNoContextTakeover = clientNoContextTakeover;
+
+            setThreshold(threshold);
+            setDeflater(new Deflater(level, true));
+            setServerNoContextTakeover(serverNoContextTakeover);
+            setClientNoContextTakeover(clientNoContextTakeover);
+        }
+
+        @Override
+        public IExtension copyInstance() {
+            return new ConfiguredDeflate(threshold, level, serverNoContextTakeover, clientNoContextTakeover);
+        }
+
+        @Override
+        public String getProvidedExtensionAsServer() {
+            return "permessage-deflate"
+                    + (isServerNoContextTakeover() ? "; server_no_context_takeover" : "")
+                    + (isClientNoContextTakeover() ? "; client_no_context_takeover" : "");
+        }
+
+        @Override
+        public void encodeFrame(Framedata inputFrame) {
+            super.encodeFrame(inputFrame);
+            if (isServerNoContextTakeover()) {
+                getDeflater().setLevel(level);
+            }
+        }
+
+        String describe() {
+            return "threshold=" + threshold + "B, level=" + level
+                    + ", server_no_context_takeover=" + serverNoContextTakeover
+                    + ", client_no_context_takeover=" + clientNoContextTakeover;
+        }
+    }
+}
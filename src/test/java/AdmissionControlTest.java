@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void bucketStartsFullAndEmpties() {
+        AdmissionControl.TokenBucket bucket = new AdmissionControl.TokenBucket(10, 20);
+        long t0 = System.nanoTime();
+
+        for (int i = 0; i < 20; i++) assertEquals(0, bucket.tryTake(t0, 0));
+        // 초당 10개 -> 다음 토큰까지 100ms
+        long wait = bucket.tryTake(t0, 0);
+        assertTrue(wait > 99 * MS && wait <= 100 * MS, "wait=" + wait);
+    }
+
+    @Test
+    void bucketRefillsAtRate() {
+        AdmissionControl.TokenBucket bucket = new AdmissionControl.TokenBucket(10, 20);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 20; i++) bucket.tryTake(t0, 0);
+
+        assertEquals(0, bucket.tryTake(t0 + 101 * MS, 0));
+        assertTrue(bucket.tryTake(t0 + 101 * MS, 0) > 0);
+        assertEquals(0, bucket.tryTake(t0 + 301 * MS, 0));
+        assertEquals(0, bucket.tryTake(t0 + 301 * MS, 0));
+    }
+
+    @Test
+    void bucketRefillIsCappedAtBurst() {
+        AdmissionControl.TokenBucket bucket = new AdmissionControl.TokenBucket(10, 20);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 20; i++) bucket.tryTake(t0, 0);
+
+        // 오래 쉬어도 버스트(20개)까지만 찬다
+        long later = t0 + 60_000 * MS;
+        for (int i = 0; i < 20; i++) assertEquals(0, bucket.tryTake(later, 0));
+        assertTrue(bucket.tryTake(later, 0) > 0);
+    }
+
+    @Test
+    void bucketKeepsReserveAboveFloor() {
+        AdmissionControl.TokenBucket bucket = new AdmissionControl.TokenBucket(10, 20);
+        long t0 = System.nanoTime();
+
+        // 바닥 5개는 남겨둠 -> 15개만 가능
+        for (int i = 0; i < 15; i++) assertEquals(0, bucket.tryTake(t0, 5));
+        assertTrue(bucket.tryTake(t0, 5) > 0);
+        // 바닥 없는 요청(COMMAND/ACK)은 남은 5개를 씀
+        for (int i = 0; i < 5; i++) assertEquals(0, bucket.tryTake(t0, 0));
+    }
+
+    @Test
+    void gateShedsFloodButAdmitsAck() {
+        AdmissionControl admission = new AdmissionControl(5, 5, Map.of(), 1_000, 0.2, AdmissionControl.Shed.DROP);
+        AdmissionControl.Gate gate = admission.newGate();
+        String location = "{\"header\":{\"type\":\"LOCATION\"}}";
+        String ack = "{\"header\":{\"type\":\"ACK\"}}";
+
+        // 연결별 초당 5개, 버스트 10개
+        for (int i = 0; i < 10; i++) assertEquals(AdmissionControl.ADMIT, gate.admit(location));
+        assertEquals(AdmissionControl.SHED, gate.admit(location));
+        // ACK는 연결별 우선 버킷으로 따로 받음
+        assertEquals(AdmissionControl.ADMIT, gate.admit(ack));
+        assertEquals(1, admission.shedTotal());
+    }
+}
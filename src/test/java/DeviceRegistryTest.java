@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DeviceRegistryTest {
+
+    @Test
+    void registerReturnsSameSlot() {
+        DeviceRegistry registry = new DeviceRegistry(4);
+        int slot = registry.register("AGV_01");
+
+        assertEquals(slot, registry.register("AGV_01"));
+        assertEquals("AGV_01", registry.idOf(slot));
+        assertEquals(DeviceRegistry.NO_SLOT, registry.slotOf("AGV_02"));
+    }
+
+    @Test
+    void sequenceInOrder() {
+        DeviceRegistry registry = new DeviceRegistry(4);
+        int slot = registry.register("AGV_01");
+
+        // 첫 패킷은 순번이 1이 아니어도 정상 (서버가 중간부터 받기 시작한 경우)
+        assertEquals(DeviceRegistry.SEQ_OK, registry.checkSequence(slot, 3));
+        assertEquals(DeviceRegistry.SEQ_OK, registry.checkSequence(slot, 4));
+        assertEquals(4, registry.lastSeq(slot));
+        assertEquals(0, registry.seqMissing(slot));
+    }
+
+    @Test
+    void sequenceGapCountsMissing() {
+        DeviceRegistry registry = new DeviceRegistry(4);
+        int slot = registry.register("AGV_01");
+
+        registry.checkSequence(slot, 1);
+        assertEquals(DeviceRegistry.SEQ_GAP, registry.checkSequence(slot, 5));
+        assertEquals(3, registry.seqMissing(slot));
+        assertEquals(5, registry.lastSeq(slot));
+    }
+
+    @Test
+    void latePacketDoesNotMoveSequence() {
+        DeviceRegistry registry = new DeviceRegistry(4);
+        int slot = registry.register("AGV_01");
+
+        registry.checkSequence(slot, 1);
+        registry.checkSequence(slot, 5);
+        assertEquals(DeviceRegistry.SEQ_LATE, registry.checkSequence(slot, 4));
+        assertEquals(DeviceRegistry.SEQ_LATE, registry.checkSequence(slot, 5));
+        assertEquals(2, registry.seqLate(slot));
+        assertEquals(5, registry.lastSeq(slot));
+    }
+
+    @Test
+    void restartAtSeqOne() {
+        DeviceRegistry registry = new DeviceRegistry(4);
+        int slot = registry.register("AGV_01");
+
+        registry.checkSequence(slot, 1);
+        registry.checkSequence(slot, 2);
+        registry.checkSequence(slot, 3);
+
+        // 장비 재시작 -> 1부터 다시 (지연 도착으로 세지 않음)
+        assertEquals(DeviceRegistry.SEQ_OK, registry.checkSequence(slot, 1));
+        assertEquals(DeviceRegistry.SEQ_OK, registry.checkSequence(slot, 2));
+        assertEquals(2, registry.lastSeq(slot));
+        assertEquals(0, registry.seqLate(slot));
+        assertEquals(0, registry.seqMissing(slot));
+    }
+
+    @Test
+    void locationKeepsQrIds() {
+        DeviceRegistry registry = new DeviceRegistry(4);
+        int slot = registry.register("AGV_01");
+
+        registry.updateLocation(slot, "QR_5", 0);
+        int qr5 = registry.lastQr(slot);
+        registry.updateLocation(slot, "QR_5", 1);
+        assertEquals(qr5, registry.lastQr(slot));
+        assertEquals(1, registry.segmentIndex(slot));
+
+        registry.updateLocation(slot, "QR_6", 2);
+        assertNotEquals(qr5, registry.lastQr(slot));
+        assertEquals("QR_6", registry.qrName(registry.lastQr(slot)));
+
+        registry.updateLocation(slot, "QR_5", 3);
+        assertEquals(qr5, registry.lastQr(slot));
+
+        registry.updateLocation(slot, null, 4);
+        assertEquals(-1, registry.lastQr(slot));
+    }
+}
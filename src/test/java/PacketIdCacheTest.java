@@ -0,0 +1,52 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PacketIdCacheTest {
+
+    private static final long WINDOW_MS = 60_000;
+
+    @Test
+    void duplicateInsideWindow() {
+        PacketIdCache cache = new PacketIdCache(1024, WINDOW_MS);
+
+        assertFalse(cache.isDuplicate("PKT_1", 0));
+        assertTrue(cache.isDuplicate("PKT_1", 1_000));
+        // window 끝 시각까지는 중복
+        assertTrue(cache.isDuplicate("PKT_1", WINDOW_MS));
+    }
+
+    @Test
+    void sameIdAfterWindowIsNew() {
+        PacketIdCache cache = new PacketIdCache(1024, WINDOW_MS);
+
+        assertFalse(cache.isDuplicate("PKT_1", 0));
+        assertFalse(cache.isDuplicate("PKT_1", WINDOW_MS + 1));
+        // 다시 기록됐으므로 그 시각부터 새 window
+        assertTrue(cache.isDuplicate("PKT_1", WINDOW_MS + 2));
+    }
+
+    @Test
+    void differentIdsAreNotDuplicates() {
+        // 충돌 탐색 범위(8칸)를 넘쳐 덮어쓰지 않도록 넉넉한 크기
+        PacketIdCache cache = new PacketIdCache(65536, WINDOW_MS);
+
+        for (int i = 0; i < 500; i++) {
+            assertFalse(cache.isDuplicate("PKT_" + i, i));
+        }
+        for (int i = 0; i < 500; i++) {
+            assertTrue(cache.isDuplicate("PKT_" + i, 1_000));
+        }
+    }
+
+    @Test
+    void footprintDoesNotGrow() {
+        PacketIdCache cache = new PacketIdCache(1024, WINDOW_MS);
+        long before = cache.footprintBytes();
+
+        for (int i = 0; i < 100_000; i++) cache.isDuplicate("PKT_" + i, i);
+        assertEquals(before, cache.footprintBytes());
+    }
+}
@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PositionStoreTest {
+
+    // 분 경계에 맞춘 시작 시각
+    private static final long T0 = 28_333_333L * 60_000;
+
+    // 점 i의 QR / 구간 (-1과 감소하는 값을 섞어 zigzag 차분도 확인)
+    private static int qrAt(int i) {
+        return (i % 17 == 0) ? -1 : (i * 31) % 500;
+    }
+
+    private static int segAt(int i) {
+        return i % 6;
+    }
+
+    private static PositionStore store(long rawRetentionMs, int points, long stepMs) {
+        DeviceRegistry registry = new DeviceRegistry(4);
+        int slot = registry.register("AGV_01");
+        PositionStore store = new PositionStore(registry, 4, rawRetentionMs);
+        for (int i = 0; i < points; i++) store.append(slot, T0 + i * stepMs, qrAt(i), segAt(i));
+        return store;
+    }
+
+    @Test
+    void rawRoundTripAcrossChunks() {
+        // 청크 256개 단위 -> 닫힌 청크 3개 + 열린 청크 1개
+        PositionStore store = store(3600_000L, 1000, 250);
+
+        PositionStore.Trail trail = store.query("AGV_01", T0, T0 + 999 * 250, 10_000);
+        assertEquals(0, trail.tier);
+        assertEquals(1000, trail.size);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(T0 + i * 250, trail.time[i]);
+            assertEquals(qrAt(i), trail.qr[i]);
+            assertEquals(segAt(i), trail.segment[i]);
+        }
+    }
+
+    @Test
+    void rangeIsInclusiveInsideChunks() {
+        PositionStore store = store(3600_000L, 1000, 250);
+
+        // 청크 경계(256)를 가로지르는 구간
+        PositionStore.Trail trail = store.query("AGV_01", T0 + 200 * 250, T0 + 299 * 250, 10_000);
+        assertEquals(100, trail.size);
+        assertEquals(T0 + 200 * 250, trail.time[0]);
+        assertEquals(qrAt(299), trail.qr[99]);
+        assertEquals(segAt(299), trail.segment[99]);
+    }
+
+    @Test
+    void longRangeReadsSecondTier() {
+        // 초당 4점 -> 1s 단계는 초마다 첫 점
+        PositionStore store = store(3600_000L, 1000, 250);
+
+        PositionStore.Trail trail = store.query("AGV_01", T0, T0 + 999 * 250, 100);
+        assertEquals(1, trail.tier);
+        assertTrue(trail.size > 0 && trail.size <= 100, "size=" + trail.size);
+        for (int k = 0; k < trail.size; k++) {
+            long offset = trail.time[k] - T0;
+            assertEquals(0, offset % 1000);
+            int i = (int) (offset / 250);
+            assertEquals(qrAt(i), trail.qr[k]);
+            assertEquals(segAt(i), trail.segment[k]);
+        }
+    }
+
+    @Test
+    void expiredRawReadsMinuteTier() {
+        // 3시간 동안 1초마다, raw는 1분만 보관 -> 전체 구간은 1m 단계에서
+        int points = 3 * 3600;
+        PositionStore store = store(60_000L, points, 1000);
+
+        PositionStore.Trail trail = store.query("AGV_01", T0, T0 + (points - 1) * 1000L, 1000);
+        assertEquals(2, trail.tier);
+        assertEquals(180, trail.size);
+        for (int k = 0; k < trail.size; k++) {
+            assertEquals(T0 + k * 60_000L, trail.time[k]);
+            assertEquals(qrAt(k * 60), trail.qr[k]);
+            assertEquals(segAt(k * 60), trail.segment[k]);
+        }
+    }
+
+    @Test
+    void unknownDeviceHasNoTrail() {
+        PositionStore store = store(3600_000L, 10, 250);
+
+        PositionStore.Trail trail = store.query("AGV_99", T0, T0 + 10_000, 100);
+        assertEquals(-1, trail.tier);
+        assertEquals(0, trail.size);
+    }
+}
@@ -0,0 +1,57 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskLedgerTest {
+
+    @Test
+    void newTaskRunsOnce() {
+        TaskLedger ledger = new TaskLedger();
+        String[] ack = new String[1];
+
+        assertTrue(ledger.begin("TASK_001", ack));
+        // 진행 중인 작업 재수신 -> 실행하지 않고 보낼 ACK도 없음
+        assertFalse(ledger.begin("TASK_001", ack));
+        assertNull(ack[0]);
+    }
+
+    @Test
+    void completedTaskReplaysAck() {
+        TaskLedger ledger = new TaskLedger();
+        String[] ack = new String[1];
+
+        ledger.begin("TASK_001", ack);
+        ledger.complete("TASK_001", "{\"ack\":1}");
+
+        assertFalse(ledger.begin("TASK_001", ack));
+        assertEquals("{\"ack\":1}", ack[0]);
+    }
+
+    @Test
+    void clearForgetsTasks() {
+        TaskLedger ledger = new TaskLedger();
+        String[] ack = new String[1];
+
+        ledger.begin("TASK_001", ack);
+        ledger.complete("TASK_001", "{\"ack\":1}");
+        ledger.clear();
+
+        assertTrue(ledger.begin("TASK_001", ack));
+    }
+
+    @Test
+    void oldestTaskIsEvicted() {
+        TaskLedger ledger = new TaskLedger(2);
+        String[] ack = new String[1];
+
+        ledger.begin("TASK_001", ack);
+        ledger.begin("TASK_002", ack);
+        ledger.begin("TASK_003", ack);
+
+        assertTrue(ledger.begin("TASK_001", ack));
+        assertFalse(ledger.begin("TASK_003", ack));
+    }
+}